@@ -0,0 +1,50 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.ApiException;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.service.DepartementService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectures des villes d'un département : une ville, toutes les villes, et les pages triées par population
+ * (getVillesDesc, getVillesBetween), faites par la base sur l'index (departement_id, nb_habitants)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DepartementServiceBenchmark {
+
+    @Benchmark
+    public VilleDto getVille(SeededApplication application, Picker picker) throws ApiException {
+        int ville = picker.ville(application.villeIds.length);
+        return application.bean(DepartementService.class).getVille(application.villeDepartementIds[ville], application.villeIds[ville]);
+    }
+
+    @Benchmark
+    public List<VilleDto> getVilles(SeededApplication application, Picker picker) throws ApiException {
+        return application.bean(DepartementService.class).getVilles(picker.departement(application));
+    }
+
+    @Benchmark
+    public Slice<VilleDto> getVillesDesc(SeededApplication application, Picker picker) throws ApiException {
+        return application.bean(DepartementService.class).getVillesDesc(picker.departement(application), null, 10);
+    }
+
+    @Benchmark
+    public Slice<VilleDto> getVillesBetween(SeededApplication application, Picker picker) throws ApiException {
+        int min = 50 + picker.nextInt(5000);
+        return application.bean(DepartementService.class).getVillesBetween(picker.departement(application), min, min * 10, null, 100);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.ApiException;
+import com.example.demo.service.DepartementService;
+import com.example.demo.service.VilleService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports CSV complets (35 000 villes, 100 départements), écrits dans un flux qui jette les octets
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Benchmark
+    public void exportVilles(SeededApplication application) throws ApiException {
+        application.bean(VilleService.class).exportVillesToCSV(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void exportDepartements(SeededApplication application) throws ApiException {
+        application.bean(DepartementService.class).exportDepartementsToCSV(OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.VilleDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formats de réponse négociables, sans base : une page de /villes (CursorPage de VilleDto) encodée et décodée
+ * en JSON, CBOR et Smile, et en JSON compressé gzip comme le fait le serveur pour les réponses texte
+ * Chaque essai vérifie d'abord que l'encodage se relit en une page identique.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    private static final TypeReference<CursorPage<VilleDto>> PAGE = new TypeReference<>() {
+    };
+
+    /**
+     * json-gzip : JSON puis gzip (niveau par défaut, comme Tomcat)
+     */
+    @Param({"json", "json-gzip", "cbor", "smile"})
+    public String format;
+
+    /**
+     * 100 : la page par défaut de /villes ; 1000 : la page maximale
+     */
+    @Param({"100", "1000"})
+    public int size;
+
+    private ObjectMapper mapper;
+
+    private CursorPage<VilleDto> page;
+
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "cbor" -> new CBORMapper();
+            case "smile" -> new SmileMapper();
+            default -> new JsonMapper();
+        };
+        SplittableRandom random = new SplittableRandom(42);
+        List<VilleDto> villes = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            villes.add(new VilleDto((long) i, SeededApplication.nom(random), SeededApplication.population(random)));
+        }
+        page = new CursorPage<>(villes, (long) size);
+        encoded = write();
+        CursorPage<VilleDto> decoded = read();
+        if (decoded.getContent().size() != size || !decoded.getContent().get(size - 1).getNom().equals(villes.get(size - 1).getNom())) {
+            throw new IllegalStateException(format + " : la page relue ne correspond pas à la page écrite");
+        }
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        if (format.equals("json-gzip")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                mapper.writeValue(gzip, page);
+            }
+            return bytes.toByteArray();
+        }
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public CursorPage<VilleDto> read() throws IOException {
+        if (format.equals("json-gzip")) {
+            return mapper.readValue(new GZIPInputStream(new ByteArrayInputStream(encoded)), PAGE);
+        }
+        return mapper.readValue(encoded, PAGE);
+    }
+}
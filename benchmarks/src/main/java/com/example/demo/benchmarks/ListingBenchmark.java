@@ -0,0 +1,79 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.ApiException;
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.service.DepartementService;
+import com.example.demo.service.VilleService;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liste complète des villes (35 000) et des départements avec leurs villes, en JSON, écrite dans un flux qui jette les octets
+ * - reflective : la liste est construite puis sérialisée par introspection des getters (le chemin d'origine) ;
+ * - materialized : la liste est construite puis sérialisée par les sérialiseurs écrits à la main ;
+ * - streamed : l'export JSON, lu et écrit par lots de app.export.batch-size, sans liste complète.
+ * L'allocation par opération (gc.alloc.rate.norm) est donnée par le profileur gc, actif par défaut (jmh.profiler).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+
+    /**
+     * Désactive les sérialiseurs écrits à la main : Jackson revient à l'introspection des getters
+     */
+    @JsonSerialize(using = JsonSerializer.None.class)
+    private abstract static class Reflective {
+    }
+
+    private static ObjectMapper reflective;
+
+    private static ObjectMapper reflective(SeededApplication application) {
+        if (reflective == null) {
+            reflective = application.bean(ObjectMapper.class).copy()
+                    .addMixIn(VilleDto.class, Reflective.class)
+                    .addMixIn(DepartementDto.class, Reflective.class);
+        }
+        return reflective;
+    }
+
+    @Benchmark
+    public void villesReflective(SeededApplication application) throws ApiException, IOException {
+        reflective(application).writeValue(OutputStream.nullOutputStream(), application.bean(VilleService.class).getVilles());
+    }
+
+    @Benchmark
+    public void villesMaterialized(SeededApplication application) throws ApiException, IOException {
+        application.bean(ObjectMapper.class).writeValue(OutputStream.nullOutputStream(), application.bean(VilleService.class).getVilles());
+    }
+
+    @Benchmark
+    public void villesStreamed(SeededApplication application) throws ApiException {
+        application.bean(VilleService.class).exportVillesToJson(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void departementsReflective(SeededApplication application) throws ApiException, IOException {
+        reflective(application).writeValue(OutputStream.nullOutputStream(), application.bean(DepartementService.class).getDepartements());
+    }
+
+    @Benchmark
+    public void departementsStreamed(SeededApplication application) throws ApiException {
+        application.bean(DepartementService.class).exportDepartementsToJson(OutputStream.nullOutputStream());
+    }
+}
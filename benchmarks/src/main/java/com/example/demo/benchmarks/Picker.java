@@ -0,0 +1,39 @@
+package com.example.demo.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Tirage des ids et des bornes lus par chaque invocation, propre à chaque thread de benchmark
+ * La graine est fixe : deux runs lisent les mêmes lignes dans le même ordre.
+ */
+@State(Scope.Thread)
+public class Picker {
+
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    long ville(SeededApplication application) {
+        return application.villeIds[ville(application.villeIds.length)];
+    }
+
+    /**
+     * Tirer l'index d'une ville dans SeededApplication.villeIds
+     */
+    int ville(int villes) {
+        return random.nextInt(villes);
+    }
+
+    long departement(SeededApplication application) {
+        return application.departementIds[random.nextInt(application.departementIds.length)];
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    String prefix() {
+        return SeededApplication.nom(random).substring(0, 3);
+    }
+}
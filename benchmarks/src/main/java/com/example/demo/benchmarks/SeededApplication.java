@@ -0,0 +1,101 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.entity.Departement;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.VilleImportService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Application démarrée sur H2 et remplie une fois par fork de benchmark
+ * 100 départements et 35 000 villes, dont les populations suivent une loi de Pareto comme les communes françaises :
+ * beaucoup de villages, peu de grandes villes. Les villes sont insérées par l'import en masse de l'application.
+ */
+@State(Scope.Benchmark)
+public class SeededApplication {
+
+    public static final int DEPARTEMENTS = 100;
+    public static final int VILLES = 35_000;
+
+    private static final String[] SYLLABES = {"saint", "mont", "ville", "bourg", "la", "le", "roche", "val", "beau",
+            "fort", "bel", "champ", "font", "mar", "ber", "cha", "tel", "lon", "sur", "neuf"};
+
+    ConfigurableApplicationContext context;
+
+    long[] departementIds;
+
+    long[] villeIds;
+
+    /**
+     * Le département de chaque ville de villeIds
+     */
+    long[] villeDepartementIds;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        context = new SpringApplicationBuilder(DemoApplication.class).profiles("bench").run();
+        SplittableRandom random = new SplittableRandom(42);
+
+        DepartementRepository departementRepository = context.getBean(DepartementRepository.class);
+        List<Departement> departements = new ArrayList<>();
+        for (int i = 1; i <= DEPARTEMENTS; i++) {
+            departements.add(new Departement("Département " + i, String.format("%03d", i)));
+        }
+        departementIds = departementRepository.saveAll(departements).stream().mapToLong(Departement::getId).toArray();
+
+        StringBuilder csv = new StringBuilder("nom,nbHabitants,departementId\n");
+        for (int i = 0; i < VILLES; i++) {
+            csv.append(nom(random)).append(',')
+                    .append(population(random)).append(',')
+                    .append(departementIds[random.nextInt(departementIds.length)]).append('\n');
+        }
+        context.getBean(VilleImportService.class).importVilles(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), VilleImportService.Format.CSV, null);
+        List<long[]> villes = context.getBean(JdbcTemplate.class).query("select id, departement_id from ville order by id",
+                (row, i) -> new long[]{row.getLong(1), row.getLong(2)});
+        villeIds = villes.stream().mapToLong(ville -> ville[0]).toArray();
+        villeDepartementIds = villes.stream().mapToLong(ville -> ville[1]).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Un nom de 2 ou 3 syllabes, comme "Saint-Montval"
+     */
+    static String nom(SplittableRandom random) {
+        StringBuilder nom = new StringBuilder();
+        int syllabes = 2 + random.nextInt(2);
+        for (int i = 0; i < syllabes; i++) {
+            String syllabe = SYLLABES[random.nextInt(SYLLABES.length)];
+            nom.append(i == 0 || random.nextInt(4) == 0 ? (i == 0 ? "" : "-") + Character.toUpperCase(syllabe.charAt(0)) + syllabe.substring(1) : syllabe);
+        }
+        return nom.toString();
+    }
+
+    /**
+     * Une population tirée d'une loi de Pareto (minimum 50 habitants), bornée à 2 millions
+     */
+    static int population(SplittableRandom random) {
+        return (int) Math.min(2_000_000, 50 / Math.pow(1 - random.nextDouble(), 1 / 1.1));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.dto.VilleDto;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation JSON avec Jackson, sans base : les villes et les départements (avec leurs villes) en entités,
+ * et les villes en VilleDto comme les renvoie l'API
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private List<Ville> villes;
+
+    private List<Departement> departements;
+
+    private List<VilleDto> villeDtos;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        villes = new ArrayList<>();
+        departements = new ArrayList<>();
+        villeDtos = new ArrayList<>();
+        for (int i = 1; i <= SeededApplication.DEPARTEMENTS; i++) {
+            Departement departement = new Departement("Département " + i, String.format("%03d", i));
+            departement.setId(i);
+            departements.add(departement);
+        }
+        for (int i = 1; i <= SeededApplication.VILLES; i++) {
+            Ville ville = new Ville(SeededApplication.nom(random), SeededApplication.population(random));
+            ville.setId(i);
+            departements.get(random.nextInt(departements.size())).addVille(ville);
+            villes.add(ville);
+            villeDtos.add(new VilleDto(ville.getId(), ville.getNom(), ville.getNbHabitants()));
+        }
+    }
+
+    @Benchmark
+    public byte[] villes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(villes);
+    }
+
+    @Benchmark
+    public byte[] departements() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(departements);
+    }
+
+    @Benchmark
+    public byte[] villeDtos() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(villeDtos);
+    }
+}
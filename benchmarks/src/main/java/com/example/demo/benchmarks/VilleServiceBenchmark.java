@@ -0,0 +1,48 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.ApiException;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.service.VilleService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectures de VilleService : par id, page par curseur, autocomplétion et tranche de population
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VilleServiceBenchmark {
+
+    @Benchmark
+    public VilleDto getVilleById(SeededApplication application, Picker picker) throws ApiException {
+        return application.bean(VilleService.class).getVilleById((int) picker.ville(application));
+    }
+
+    @Benchmark
+    public Slice<VilleDto> getVillesPage(SeededApplication application, Picker picker) throws ApiException {
+        return application.bean(VilleService.class).getVilles(picker.ville(application), 100);
+    }
+
+    @Benchmark
+    public List<VilleDto> searchByPrefix(SeededApplication application, Picker picker) throws ApiException {
+        return application.bean(VilleService.class).getVillesByNameStartingWith(picker.prefix(), 10);
+    }
+
+    @Benchmark
+    public Slice<VilleDto> getVillesByPopulationBetween(SeededApplication application, Picker picker) throws ApiException {
+        int min = 50 + picker.nextInt(5000);
+        return application.bean(VilleService.class).getVillesByPopulationBetween(min, min * 2, 0, 100);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception levée quand la requête du client est invalide, par exemple un curseur qui ne désigne aucune ville
+ * Spring la traduit en réponse 400 Bad Request
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends ApiException {
+
+    /**
+     *
+     * @param message
+     */
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
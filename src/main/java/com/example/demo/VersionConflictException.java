@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception levée quand une écriture conditionnelle (If-Match) vise une version qui n'est plus la version courante
+ * Spring la traduit en réponse 412 Precondition Failed
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class VersionConflictException extends ApiException {
+
+    /**
+     *
+     * @param message
+     */
+    public VersionConflictException(String message) {
+        super(message);
+    }
+
+    /**
+     * Vérifier la version attendue par une écriture conditionnelle
+     *
+     * @param current la version courante de la ressource
+     * @param expected la version attendue (If-Match), null si l'écriture n'est pas conditionnelle
+     */
+    public static void check(long current, Long expected) throws VersionConflictException {
+        if (expected != null && expected != current) {
+            throw new VersionConflictException("La ressource a été modifiée : version " + current + " au lieu de " + expected);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.config;
+
+import com.example.demo.ApiException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compte les ApiException qui sortent des contrôleurs, par message (métrique recensement.api.exceptions)
+ * Les exceptions sont comptées à la sortie du contrôleur et non du service : une exception relancée d'un service
+ * à l'autre n'est comptée qu'une fois. Les nombres du message sont remplacés par # pour ne pas créer
+ * une série par id (« Curseur invalide : la ville # n'existe pas dans ce département »).
+ */
+@Aspect
+@Component
+public class ApiExceptionMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterThrowing(pointcut = "within(com.example.demo.controller..*)", throwing = "exception")
+    public void count(ApiException exception) {
+        String message = exception.getMessage() == null ? "" : exception.getMessage().replaceAll("\\d+", "#");
+        Counter.builder("recensement.api.exceptions")
+                .description("ApiException levées par les contrôleurs")
+                .tag("exception", exception.getClass().getSimpleName())
+                .tag("message", message)
+                .register(meterRegistry)
+                .increment();
+    }
+}
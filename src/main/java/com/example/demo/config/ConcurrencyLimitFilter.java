@@ -0,0 +1,62 @@
+package com.example.demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtre qui borne le nombre de requêtes traitées en même temps
+ * Avec les threads virtuels, Tomcat n'a plus de pool de threads pour limiter la concurrence : ce filtre joue ce rôle,
+ * pour que les requêtes n'attendent pas toutes une connexion Hikari. Les requêtes attendent leur place dans l'ordre d'arrivée ;
+ * une requête qui n'obtient pas de place
+ * dans le délai app.concurrency.max-wait reçoit 503 avec Retry-After.
+ * La place est rendue quand le thread de la requête en sort : un export asynchrone ne la garde pas pendant l'écriture.
+ * Le filtre n'est créé que si app.concurrency.max-requests est supérieur à 0.
+ */
+@Component
+@ConditionalOnExpression("${app.concurrency.max-requests:0} > 0")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+
+    private final long maxWaitNanos;
+
+    public ConcurrencyLimitFilter(@Value("${app.concurrency.max-requests}") int maxRequests,
+                                  @Value("${app.concurrency.max-wait:1s}") Duration maxWait) {
+        this.permits = new Semaphore(maxRequests, true);
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Trop de requêtes en cours");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Pool de connexions JDBC utilisé par JPA et par l'import en masse
+ * Spring Boot ne crée plus de DataSource dès qu'un ConnectionFactory R2DBC est présent (API /reactive) :
+ * on le déclare donc ici, configuré comme avant par spring.datasource.* et spring.datasource.hikari.*
+ * Si des réplicas sont déclarés (app.datasource.replicas), chacun a son pool, copié de celui de la base principale,
+ * et les transactions en lecture seule leur sont envoyées par ReplicaRoutingDataSource.
+ */
+@Configuration
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicaProperties.class})
+public class DataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, ReplicaProperties replicaProperties,
+                                 Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (replicaProperties.getReplicas().isEmpty()) {
+            return primary;
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (ReplicaProperties.Replica replica : replicaProperties.getReplicas()) {
+            HikariDataSource pool = new HikariDataSource();
+            primary.copyStateTo(pool);
+            String name = Objects.requireNonNullElse(primary.getPoolName(), "recensement") + "-replica-" + (replicas.size() + 1);
+            pool.setPoolName(name);
+            pool.setJdbcUrl(replica.getUrl());
+            if (replica.getUsername() != null) {
+                pool.setUsername(replica.getUsername());
+            }
+            if (replica.getPassword() != null) {
+                pool.setPassword(replica.getPassword());
+            }
+            pool.setConnectionTimeout(replicaProperties.getConnectionTimeout().toMillis());
+            // Un réplica arrêté au démarrage ne bloque pas l'application : il sera repris par la vérification périodique
+            pool.setInitializationFailTimeout(-1);
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.put(name, pool);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, replicaProperties.getHealthCheckInterval());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Filtre qui garde les lectures d'un client sur la base principale juste après ses écritures
+ * Un réplica peut avoir un peu de retard : un client qui vient d'ajouter un département ne doit pas recevoir 404 en le relisant.
+ * Chaque POST, PUT, PATCH ou DELETE pose un cookie valable app.datasource.read-your-writes ;
+ * tant que le client le renvoie, ses lectures sont faites sur la base principale.
+ * Le filtre n'est créé que si un réplica est déclaré ; si read-your-writes vaut 0, seule la requête d'écriture elle-même
+ * lit sur la base principale.
+ */
+@Component
+@ConditionalOnProperty("app.datasource.replicas[0].url")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * Cookie posé après une écriture, sa valeur est la fin de la fenêtre (epoch en millisecondes)
+     */
+    public static final String COOKIE = "recensement-primary";
+
+    private static final Set<String> WRITES = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(ReplicaProperties properties) {
+        this.windowMillis = properties.getReadYourWrites().toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        boolean write = WRITES.contains(request.getMethod());
+        if (write && windowMillis > 0) {
+            // Posé avant la réponse : une fois le corps écrit, les en-têtes ne peuvent plus changer
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(now + windowMillis));
+            cookie.setMaxAge((int) ((windowMillis + 999) / 1000));
+            cookie.setHttpOnly(true);
+            cookie.setPath("/");
+            response.addCookie(cookie);
+        }
+        // La requête d'écriture elle-même relit sur la base principale (Prefer: return=representation, par exemple)
+        ReplicaRoutingDataSource.usePrimary(write || pinned(request, now));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.usePrimary(false);
+        }
+    }
+
+    /**
+     * Le client a-t-il écrit il y a moins de read-your-writes ?
+     */
+    private boolean pinned(HttpServletRequest request, long now) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > now;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Réplicas en lecture de la base (app.datasource.*)
+ * Sans réplica, toutes les requêtes vont à spring.datasource comme avant.
+ * <pre>
+ * app.datasource.replicas[0].url=jdbc:mysql://replica-1:3306/recensement
+ * app.datasource.replicas[1].url=jdbc:mysql://replica-2:3306/recensement
+ * </pre>
+ */
+@ConfigurationProperties("app.datasource")
+public class ReplicaProperties {
+
+    /**
+     * Un réplica : son URL, et ses identifiants s'ils diffèrent de ceux de spring.datasource
+     */
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Durée pendant laquelle les lectures d'un client restent sur la base principale après une écriture (0 : jamais)
+     */
+    private Duration readYourWrites = Duration.ofSeconds(2);
+
+    /**
+     * Intervalle entre deux vérifications des réplicas
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * Attente maximale d'une connexion à un réplica avant de le déclarer indisponible
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public Duration getReadYourWrites() {
+        return readYourWrites;
+    }
+
+    public void setReadYourWrites(Duration readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    public Duration getHealthCheckInterval() {
+        return healthCheckInterval;
+    }
+
+    public void setHealthCheckInterval(Duration healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(Duration connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource qui envoie les transactions en lecture seule (@Transactional(readOnly = true)) aux réplicas,
+ * et tout le reste à la base principale
+ * La connexion n'est choisie qu'à la première requête SQL (LazyConnectionDataSourceProxy) : la transaction est
+ * alors déjà marquée en lecture seule. Les réplicas sont utilisés à tour de rôle ; un réplica dont la connexion échoue
+ * est écarté jusqu'à ce que la vérification périodique le retrouve, et sans réplica disponible les lectures vont
+ * à la base principale. Les lectures d'une requête HTTP peuvent être forcées sur la base principale par usePrimary(),
+ * pour qu'un client relise ses propres écritures.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private final Router router;
+
+    private final ScheduledExecutorService healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param primary la base principale
+     * @param replicas les réplicas, par nom
+     * @param healthCheckInterval l'intervalle entre deux vérifications des réplicas
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration healthCheckInterval) {
+        this(new Router(primary, replicas.entrySet().stream().map(replica -> new Replica(replica.getKey(), replica.getValue())).toList()));
+        healthCheck.scheduleWithFixedDelay(this::checkReplicas, healthCheckInterval.toMillis(), healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private ReplicaRoutingDataSource(Router router) {
+        super(router);
+        this.router = router;
+    }
+
+    /**
+     * Forcer les lectures du thread courant sur la base principale, jusqu'à usePrimary(false)
+     */
+    public static void usePrimary(boolean primary) {
+        if (primary) {
+            PRIMARY.set(Boolean.TRUE);
+        } else {
+            PRIMARY.remove();
+        }
+    }
+
+    /**
+     * Vérifier chaque réplica : il est écarté si sa connexion échoue, et repris dès qu'elle réussit
+     */
+    public void checkReplicas() {
+        for (Replica replica : router.replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(1)) {
+                    throw new SQLException("connexion invalide");
+                }
+                if (!replica.healthy) {
+                    log.info("Réplica {} disponible", replica.name);
+                    replica.healthy = true;
+                }
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        healthCheck.shutdownNow();
+        for (Replica replica : router.replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (router.primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Un réplica et son état
+     */
+    private static final class Replica {
+
+        final String name;
+
+        final DataSource dataSource;
+
+        volatile boolean healthy = true;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        void markDown(SQLException e) {
+            if (healthy) {
+                log.warn("Réplica {} indisponible, lectures envoyées à la base principale : {}", name, e.getMessage());
+                healthy = false;
+            }
+        }
+    }
+
+    /**
+     * Choix de la base au moment où la connexion est vraiment demandée
+     */
+    private static final class Router extends AbstractDataSource {
+
+        final DataSource primary;
+
+        final List<Replica> replicas;
+
+        final AtomicInteger next = new AtomicInteger();
+
+        Router(DataSource primary, List<Replica> replicas) {
+            this.primary = primary;
+            this.replicas = replicas;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY.get() != null) {
+                return primary.getConnection();
+            }
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    return replica.dataSource.getConnection();
+                } catch (SQLException e) {
+                    replica.markDown(e);
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+
+        /**
+         * unwrap donne accès au pool de la base principale (métriques Hikari, par exemple)
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return (T) this;
+            }
+            return primary.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || primary.isWrapperFor(iface);
+        }
+    }
+}
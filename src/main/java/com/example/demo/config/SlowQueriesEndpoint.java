@@ -0,0 +1,32 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Endpoint d'administration /actuator/slowqueries : les dernières requêtes SQL lentes et leur plan d'exécution
+ * DELETE vide la liste. L'endpoint n'est pas exposé par défaut : il est servi sur le port de management (local)
+ * seulement s'il figure dans management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    @Autowired
+    private SqlMonitor sqlMonitor;
+
+    @ReadOperation
+    public List<SqlMonitor.SlowQuery> slowQueries() {
+        return sqlMonitor.slowQueries();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        sqlMonitor.clearSlowQueries();
+    }
+}
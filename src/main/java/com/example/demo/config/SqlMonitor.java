@@ -0,0 +1,254 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Suivi des requêtes SQL exécutées par JPA et par JDBC, branché sur le DataSource par SqlMonitoringConfig
+ * Chaque requête SQL est comptée dans les SqlStats du thread courant. À la fin d'une requête HTTP, SqlStatsFilter
+ * appelle requestCompleted() qui publie les métriques et signale les N+1.
+ * Une requête SQL plus lente que app.sql.slow-query-threshold est gardée, avec son plan d'exécution (EXPLAIN),
+ * dans un tampon circulaire de app.sql.slow-query-capacity entrées lisible sur /actuator/slowqueries.
+ * L'EXPLAIN est exécuté en arrière-plan, sur une autre connexion : il ne ralentit pas la requête HTTP.
+ * Le texte des requêtes est écrit au niveau DEBUG de ce logger, à la place de spring.jpa.show-sql.
+ */
+@Component
+public class SqlMonitor implements QueryExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlMonitor.class);
+
+    private static final String START = SqlMonitor.class.getName() + ".start";
+
+    /**
+     * Une requête SQL lente
+     *
+     * @param at l'heure de la fin de la requête
+     * @param request la requête HTTP qui l'a exécutée, ou null hors requête HTTP
+     * @param sql le texte de la requête
+     * @param durationMillis sa durée en ms
+     * @param plan le résultat de l'EXPLAIN, une ligne par ligne de résultat (vide pour un INSERT)
+     */
+    public record SlowQuery(Instant at, String request, String sql, double durationMillis, List<String> plan) {
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Nombre d'exécutions identiques d'une requête SQL dans une requête HTTP à partir duquel un N+1 est signalé
+     */
+    @Value("${app.sql.n-plus-one-threshold:10}")
+    private int nPlusOneThreshold;
+
+    @Value("${app.sql.slow-query-threshold:500ms}")
+    private Duration slowQueryThreshold;
+
+    @Value("${app.sql.slow-query-capacity:50}")
+    private int slowQueryCapacity;
+
+    /**
+     * Les dernières requêtes lentes, la plus récente en tête
+     */
+    private final ArrayDeque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    /**
+     * Un seul thread pour les EXPLAIN, et au plus 10 en attente : au-delà, les requêtes lentes sont gardées sans plan
+     */
+    private final ThreadPoolExecutor explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(10), runnable -> {
+                Thread thread = new Thread(runnable, "sql-explain");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Le DataSource d'origine, pour exécuter les EXPLAIN sans les compter
+     */
+    private DataSource target;
+
+    /**
+     * Envelopper un DataSource pour suivre ses requêtes SQL
+     *
+     * @param dataSource le DataSource de l'application
+     * @return DataSource le DataSource enveloppé
+     */
+    public DataSource wrap(DataSource dataSource) {
+        this.target = dataSource;
+        return ProxyDataSourceBuilder.create(dataSource).name("recensement").listener(this).build();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long nanos = System.nanoTime() - execInfo.getCustomValue(START, Long.class);
+        String sql = queryInfoList.size() == 1 ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        SqlStats stats = SqlStats.current();
+        if (stats != null) {
+            stats.record(sql, nanos, execInfo.isBatch());
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("{} ms : {}", nanos / 1_000_000.0, sql);
+        }
+        if (nanos >= slowQueryThreshold.toNanos()) {
+            slowQuery(sql, queryInfoList.size() == 1 && !execInfo.isBatch() ? queryInfoList.get(0) : null, nanos,
+                    stats != null ? stats.label() : null);
+        }
+    }
+
+    /**
+     * Publier les métriques d'une requête HTTP terminée et signaler ses N+1
+     *
+     * @param stats les compteurs de la requête
+     * @param uri le modèle d'URL de l'endpoint, par exemple /departements/{id}
+     * @param method la méthode HTTP
+     */
+    void requestCompleted(SqlStats stats, String uri, String method) {
+        DistributionSummary.builder("recensement.sql.statements")
+                .description("Requêtes SQL exécutées par requête HTTP")
+                .tag("uri", uri)
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(stats.statements());
+        Timer.builder("recensement.sql.time")
+                .description("Temps passé dans la base par requête HTTP")
+                .tag("uri", uri)
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(stats.time());
+        stats.repeated(nPlusOneThreshold).forEach((sql, count) -> {
+            log.warn("N+1 probable sur {} : requête exécutée {} fois : {}", stats.label(), count, sql);
+            Counter.builder("recensement.sql.n_plus_one")
+                    .description("Requêtes SQL répétées au-delà de app.sql.n-plus-one-threshold dans une requête HTTP")
+                    .tag("uri", uri)
+                    .tag("method", method)
+                    .register(meterRegistry)
+                    .increment();
+        });
+    }
+
+    /**
+     * @return List<SlowQuery> les dernières requêtes lentes, la plus récente en tête
+     */
+    public List<SlowQuery> slowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void clearSlowQueries() {
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * Garder une requête lente, avec son plan si l'EXPLAIN peut être mis en file
+     */
+    private void slowQuery(String sql, QueryInfo query, long nanos, String request) {
+        Counter.builder("recensement.sql.slow")
+                .description("Requêtes SQL plus lentes que app.sql.slow-query-threshold")
+                .register(meterRegistry)
+                .increment();
+        Instant at = Instant.now();
+        double durationMillis = nanos / 1_000_000.0;
+        List<ParameterSetOperation> parameters = query != null && !query.getParametersList().isEmpty()
+                ? new ArrayList<>(query.getParametersList().get(0)) : List.of();
+        if (target == null || !explainable(sql)) {
+            keep(new SlowQuery(at, request, sql, durationMillis, List.of()));
+            return;
+        }
+        try {
+            explainExecutor.execute(() -> keep(new SlowQuery(at, request, sql, durationMillis, explain(sql, parameters))));
+        } catch (RejectedExecutionException e) {
+            keep(new SlowQuery(at, request, sql, durationMillis, List.of()));
+        }
+    }
+
+    private void keep(SlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            slowQueries.addFirst(slowQuery);
+            while (slowQueries.size() > slowQueryCapacity) {
+                slowQueries.removeLast();
+            }
+        }
+    }
+
+    private static boolean explainable(String sql) {
+        String start = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return start.startsWith("select") || start.startsWith("update") || start.startsWith("delete");
+    }
+
+    /**
+     * Exécuter EXPLAIN avec les paramètres de la requête lente
+     *
+     * @return List<String> une ligne par ligne de résultat, au format colonne=valeur
+     */
+    private List<String> explain(String sql, List<ParameterSetOperation> parameters) {
+        try (Connection connection = target.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (ParameterSetOperation parameter : parameters) {
+                Object[] args = parameter.getArgs();
+                if (parameter.getMethod().getName().equals("setNull")) {
+                    statement.setNull((Integer) args[0], (Integer) args[1]);
+                } else if (args.length >= 2 && args[0] instanceof Integer index) {
+                    statement.setObject(index, args[1]);
+                }
+            }
+            List<String> plan = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                while (resultSet.next()) {
+                    List<String> columns = new ArrayList<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        columns.add(metaData.getColumnLabel(i) + "=" + resultSet.getString(i));
+                    }
+                    plan.add(String.join(", ", columns));
+                }
+            }
+            return Collections.unmodifiableList(plan);
+        } catch (Exception e) {
+            return List.of("EXPLAIN impossible : " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+}
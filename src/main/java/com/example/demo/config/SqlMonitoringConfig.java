@@ -0,0 +1,31 @@
+package com.example.demo.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Branche SqlMonitor sur le DataSource de l'application
+ * Le DataSource est enveloppé après sa création : JPA, JdbcTemplate et l'import en masse passent tous par le proxy.
+ * L'API /reactive (R2DBC) n'utilise pas ce DataSource et n'est pas suivie.
+ */
+@Configuration
+public class SqlMonitoringConfig {
+
+    @Bean
+    static BeanPostProcessor sqlMonitoringPostProcessor(ObjectProvider<SqlMonitor> sqlMonitor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return sqlMonitor.getObject().wrap(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compteurs des requêtes SQL exécutées par un thread entre begin() et end()
+ * SqlStatsFilter les ouvre pour chaque requête HTTP ; un test peut faire de même autour d'un appel de service :
+ * <pre>
+ * SqlStats stats = SqlStats.begin("test");
+ * try { ... } finally { SqlStats.end(); }
+ * assertEquals(1, stats.statements());
+ * </pre>
+ * Les compteurs sont alimentés par SqlMonitor, sur le thread qui exécute la requête SQL.
+ */
+public final class SqlStats {
+
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private final String label;
+
+    private int statements;
+
+    private long nanos;
+
+    /**
+     * Nombre d'exécutions de chaque requête SQL (texte avec ses ?), hors lots JDBC
+     */
+    private final Map<String, Integer> executions = new HashMap<>();
+
+    private SqlStats(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Commencer à compter les requêtes SQL du thread courant
+     *
+     * @param label ce qui est compté, par exemple "GET /departements"
+     * @return SqlStats les compteurs, remplis jusqu'à end()
+     */
+    public static SqlStats begin(String label) {
+        SqlStats stats = new SqlStats(label);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * @return SqlStats les compteurs du thread courant, ou null hors de begin() / end()
+     */
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Arrêter de compter les requêtes SQL du thread courant
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void record(String sql, long nanos, boolean batch) {
+        statements++;
+        this.nanos += nanos;
+        if (!batch) {
+            executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * @return int le nombre de requêtes SQL exécutées (un lot JDBC compte pour une)
+     */
+    public int statements() {
+        return statements;
+    }
+
+    /**
+     * @return Duration le temps total passé dans la base
+     */
+    public Duration time() {
+        return Duration.ofNanos(nanos);
+    }
+
+    /**
+     * Les requêtes SQL exécutées au moins threshold fois à l'identique (aux paramètres près) : le signe d'un N+1
+     *
+     * @param threshold le nombre d'exécutions à partir duquel une requête est signalée
+     * @return Map<String, Integer> le nombre d'exécutions de chaque requête signalée
+     */
+    public Map<String, Integer> repeated(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        executions.forEach((sql, count) -> {
+            if (count >= threshold) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Filtre qui compte les requêtes SQL de chaque requête HTTP
+ * Le nombre de requêtes SQL et le temps passé dans la base sont renvoyés dans les en-têtes X-Sql-Statements
+ * et Server-Timing (db;dur=ms), écrits juste avant le corps de la réponse, puis publiés en métriques par SqlMonitor.
+ * Une réponse écrite au fil de l'eau (export) n'annonce que les requêtes exécutées avant son premier octet.
+ * Les en-têtes sont désactivés par app.sql.response-headers=false.
+ */
+@Component
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+
+    @Autowired
+    private SqlMonitor sqlMonitor;
+
+    @Value("${app.sql.response-headers:true}")
+    private boolean responseHeaders;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        SqlStats stats = SqlStats.begin(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, responseHeaders ? new HeaderWritingResponse(response, stats) : response);
+        } finally {
+            SqlStats.end();
+            if (responseHeaders && !response.isCommitted()) {
+                writeHeaders(response, stats);
+            }
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            sqlMonitor.requestCompleted(stats, uri != null ? uri.toString() : "UNKNOWN", request.getMethod());
+        }
+    }
+
+    private static void writeHeaders(HttpServletResponse response, SqlStats stats) {
+        response.setHeader(STATEMENTS_HEADER, String.valueOf(stats.statements()));
+        response.setHeader("Server-Timing", String.format(Locale.ROOT, "db;dur=%.1f", stats.time().toNanos() / 1_000_000.0));
+    }
+
+    /**
+     * Réponse qui écrit les en-têtes SQL quand le corps commence, avant que les en-têtes ne partent
+     */
+    private static final class HeaderWritingResponse extends HttpServletResponseWrapper {
+
+        private final SqlStats stats;
+
+        HeaderWritingResponse(HttpServletResponse response, SqlStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        private void beforeCommit() {
+            if (!isCommitted()) {
+                writeHeaders((HttpServletResponse) getResponse(), stats);
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            beforeCommit();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            beforeCommit();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            beforeCommit();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            beforeCommit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            beforeCommit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            beforeCommit();
+            super.sendRedirect(location);
+        }
+    }
+}
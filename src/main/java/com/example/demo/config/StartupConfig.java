@@ -0,0 +1,26 @@
+package com.example.demo.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+
+/**
+ * Initialisation paresseuse des beans (spring.main.lazy-initialization, profil fast-startup)
+ * Les beans du chemin des requêtes restent créés au démarrage : contrôleurs, services, DataSource et JPA.
+ * La première requête n'attend donc pas leur création ; seuls les beans peu utilisés (endpoints d'administration,
+ * métriques, ...) sont créés à leur premier appel.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter requestPathBeans() {
+        return (beanName, beanDefinition, beanType) -> beanType.getPackageName().startsWith("com.example.demo.controller")
+                || beanType.getPackageName().startsWith("com.example.demo.service")
+                || DataSource.class.isAssignableFrom(beanType)
+                || AbstractEntityManagerFactoryBean.class.isAssignableFrom(beanType);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Filtre qui ajoute Vary: Accept à toutes les réponses
+ * Une même ressource est servie en JSON, CBOR ou Smile selon l'en-tête Accept (BinaryFormatsConfig) : un cache partagé
+ * ou un navigateur doit garder une réponse par valeur d'Accept, et ne pas servir du CBOR à un client qui attend du JSON.
+ * L'en-tête est posé avant le traitement pour figurer aussi sur les réponses 304 et les réponses d'erreur.
+ */
+@Component
+public class VaryAcceptFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        filterChain.doFilter(request, response);
+    }
+}
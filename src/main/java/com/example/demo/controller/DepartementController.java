@@ -1,15 +1,36 @@
 package com.example.demo.controller;
 
 import com.example.demo.ApiException;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.ImportResultDto;
+import com.example.demo.dto.PopulationStatsDto;
+import com.example.demo.dto.VersionDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.dto.VillePatchDto;
+import com.example.demo.dto.VillePutDto;
 import com.example.demo.entity.Departement;
 import com.example.demo.entity.Ville;
 import com.example.demo.service.DepartementService;
-import jakarta.servlet.http.HttpServletResponse;
+import com.example.demo.service.DepartementStatsService;
+import com.example.demo.service.VilleImportService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.stream.Collectors;
 
 
 /**
@@ -29,67 +50,168 @@ public class DepartementController {
     private DepartementService departementService;
 
     /**
-     * Récupérer la liste des départements
-     * @return List<Departement> la liste des départements
+     * Service d'import en masse des villes
+     */
+    @Autowired
+    private VilleImportService villeImportService;
+
+    /**
+     * Service des statistiques de population des départements
+     */
+    @Autowired
+    private DepartementStatsService departementStatsService;
+
+    /**
+     * Récupérer la liste des départements, page par page à partir d'un curseur
+     * @param after l'id du dernier département reçu (0 pour la première page)
+     * @param limit le nombre de départements par page
+     * @param villes le contenu des villes de chaque département : AUCUNE, NOMS ou IDS
+     * @return CursorPage<DepartementDto> la page de départements et le curseur de la page suivante
      */
     @GetMapping()
-    public ResponseEntity<List<Departement>> getDepartements() throws ApiException {
-        return ResponseEntity.ok(departementService.getDepartements());
+    public ResponseEntity<CursorPage<DepartementDto>> getDepartements(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit,
+                                                                      @RequestParam(defaultValue = "NOMS") DepartementDto.Villes villes) throws ApiException {
+        return ResponseEntity.ok(CursorPage.of(departementService.getDepartements(after, limit, villes), DepartementDto::getId));
+    }
+
+    /**
+     * Récupérer la liste des départements par numéro de page (?page=&size=&sort=)
+     * @param pageable le numéro et la taille de la page
+     * @param villes le contenu des villes de chaque département : AUCUNE, NOMS ou IDS
+     * @return PagedModel<DepartementDto> la page de départements
+     */
+    @GetMapping(params = "page")
+    public ResponseEntity<PagedModel<DepartementDto>> getDepartementsPage(@PageableDefault(size = 100, sort = "id") Pageable pageable,
+                                                                          @RequestParam(defaultValue = "NOMS") DepartementDto.Villes villes) throws ApiException {
+        return ResponseEntity.ok(new PagedModel<>(departementService.getDepartements(pageable, villes)));
     }
 
 
     /**
      * Récupérer un département par son id
+     * Répond 304 sans lire le département si l'ETag (If-None-Match) ou la date (If-Modified-Since) n'ont pas changé
      * @param id l'id du département
-     * @return Departement le département
+     * @param villes le contenu des villes du département : AUCUNE, NOMS ou IDS
+     * @param request la requête, pour les en-têtes conditionnels
+     * @return DepartementDto le département
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Departement> getDepartement(@PathVariable long id) throws ApiException {
-        return ResponseEntity.ok(departementService.getDepartementById(id));
+    public ResponseEntity<DepartementDto> getDepartement(@PathVariable long id, @RequestParam(defaultValue = "NOMS") DepartementDto.Villes villes,
+                                                         WebRequest request) throws ApiException {
+        VersionDto version = departementService.getVersion(id);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(version.getEtag(Representation.format(request)), version.getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok(departementService.getDepartementById(id, villes));
+    }
+
+    /**
+     * Récupérer les statistiques de population de la France entière et de chaque département
+     * @return PopulationStatsDto le nombre de villes et la population totale, minimale, maximale et moyenne
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<PopulationStatsDto> getStats() throws ApiException {
+        return ResponseEntity.ok(departementStatsService.getStats());
+    }
+
+    /**
+     * Récupérer les statistiques de population d'un département
+     * @param id l'id du département
+     * @return PopulationStatsDto les statistiques, 404 si le département n'existe pas
+     */
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<PopulationStatsDto> getStats(@PathVariable long id) throws ApiException {
+        PopulationStatsDto stats = departementStatsService.getStats(id);
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stats);
     }
 
 
     /**
      * Ajouter un département
+     * Répond 201 avec l'en-tête Location et le département créé (sans corps avec Prefer: return=minimal)
      * @param departement le département à ajouter
-     * @return String message de confirmation
+     * @param prefer l'en-tête Prefer
+     * @return DepartementDto le département ajouté
      */
     @PostMapping
-    public ResponseEntity<String> addDepartement(@RequestBody Departement departement) throws ApiException {
-        departementService.addDepartement(departement);
-        return ResponseEntity.ok("Département ajouté");
+    public ResponseEntity<DepartementDto> addDepartement(@RequestBody Departement departement,
+                                                         @RequestHeader(value = "Prefer", required = false) String prefer) throws ApiException {
+        Departement saved = departementService.addDepartement(departement);
+        Prefer preference = Prefer.of(prefer);
+        ResponseEntity.BodyBuilder response = ResponseEntity.created(
+                ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(saved.getId()).toUri()).headers(preference.headers());
+        return preference == Prefer.MINIMAL ? response.build() : response.body(new DepartementDto(saved.getId(), saved.getNom(), saved.getCode()));
     }
 
 
     /**
      * Supprimer un département
+     * Répond 204, ou le département supprimé avec Prefer: return=representation
      * @param id l'id du département à supprimer
-     * @return List<Departement> la liste des départements
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return DepartementDto le département supprimé s'il est demandé
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<List<Departement>> deleteDepartement(@PathVariable long id) throws ApiException {
-        departementService.deleteDepartement(id);
-        return ResponseEntity.ok(departementService.getDepartements());
+    public ResponseEntity<DepartementDto> deleteDepartement(@PathVariable long id,
+                                                            @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                            @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        DepartementDto deleted = departementService.deleteDepartement(id, IfMatch.version(ifMatch));
+        if (deleted == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.REPRESENTATION) {
+            return ResponseEntity.ok().headers(preference.headers()).body(deleted);
+        }
+        return ResponseEntity.noContent().headers(preference.headers()).build();
     }
 
 
     /**
      * Mettre à jour un département
      * @param departement le département à mettre à jour
-     * @return Departement le département mis à jour
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return DepartementDto le département mis à jour (204 sans corps avec Prefer: return=minimal), 404 s'il n'existe pas
      */
     @PutMapping
-    public ResponseEntity<Departement> updateDepartement(@RequestBody Departement departement) throws ApiException {
-        return ResponseEntity.ok(departementService.updateDepartement(departement));
+    public ResponseEntity<DepartementDto> updateDepartement(@RequestBody Departement departement,
+                                                            @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                            @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        DepartementDto updated = departementService.updateDepartement(departement, IfMatch.version(ifMatch));
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.MINIMAL) {
+            return ResponseEntity.noContent().headers(preference.headers()).build();
+        }
+        return ResponseEntity.ok().headers(preference.headers()).body(updated);
     }
 
     /**
      * Récupérer la liste des villes d'un département
+     * L'ETag de la liste est la version du département, qui change avec ses villes, suivie du format : 304 si elle n'a pas changé
      * @param id l'id du département
-     * @return List<Ville> la liste des villes
+     * @param request la requête, pour les en-têtes conditionnels
+     * @return List<VilleDto> la liste des villes
      */
     @GetMapping("/{id}/villes")
-    public ResponseEntity<List<Ville>> getVilles(@PathVariable long id) throws ApiException {
+    public ResponseEntity<List<VilleDto>> getVilles(@PathVariable long id, WebRequest request) throws ApiException {
+        VersionDto version = departementService.getVersion(id);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(version.getEtag(Representation.format(request)), version.getLastModified())) {
+            return null;
+        }
         return ResponseEntity.ok(departementService.getVilles(id));
     }
 
@@ -97,61 +219,148 @@ public class DepartementController {
      * Récupérer une ville d'un département
      * @param id l'id du département
      * @param villeId l'id de la ville
-     * @return
+     * @return VilleDto la ville, 404 si elle n'existe pas dans ce département
      */
     @GetMapping("/{id}/villes/{villeId}")
-    public ResponseEntity<Ville> getVille(@PathVariable long id, @PathVariable long villeId) throws ApiException {
-        return ResponseEntity.ok(departementService.getVille(id, villeId));
+    public ResponseEntity<VilleDto> getVille(@PathVariable long id, @PathVariable long villeId) throws ApiException {
+        VilleDto ville = departementService.getVille(id, villeId);
+        if (ville == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ville);
     }
 
     /**
      * Ajouter une ville à un département
+     * Répond 201 avec l'en-tête Location et la ville créée (sans corps avec Prefer: return=minimal)
      * @param id l'id du département
      * @param ville la ville à ajouter
-     * @return
+     * @param prefer l'en-tête Prefer
+     * @return VilleDto la ville ajoutée
      */
     @PostMapping("/{id}/villes")
-    public ResponseEntity<List<Ville>> addVille(@PathVariable long id, @RequestBody Ville ville) throws ApiException {
-        departementService.addVille(id, ville);
-        return ResponseEntity.ok(departementService.getVilles(id));
+    public ResponseEntity<VilleDto> addVille(@PathVariable long id, @RequestBody Ville ville,
+                                      @RequestHeader(value = "Prefer", required = false) String prefer) throws ApiException {
+        VilleDto created = departementService.addVille(id, ville);
+        if (created == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        ResponseEntity.BodyBuilder response = ResponseEntity.created(
+                ServletUriComponentsBuilder.fromCurrentRequest().path("/{villeId}").buildAndExpand(created.getId()).toUri()).headers(preference.headers());
+        return preference == Prefer.MINIMAL ? response.build() : response.body(created);
+    }
+
+
+    /**
+     * Importer des villes en masse dans un département depuis un fichier CSV (text/csv) ou NDJSON (application/x-ndjson)
+     * @param id l'id du département
+     * @param contentType le format du fichier
+     * @param body le contenu du fichier
+     * @return ImportResultDto le nombre de villes acceptées et rejetées
+     */
+    @PostMapping(value = "/{id}/villes/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ImportResultDto> importVilles(@PathVariable long id, @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                        InputStream body) throws ApiException {
+        if (departementService.getDepartementById(id, DepartementDto.Villes.AUCUNE) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(villeImportService.importVilles(body, VilleController.importFormat(contentType), id));
     }
 
 
     /**
      * Supprimer une ville d'un département
+     * Répond 204, ou la ville supprimée avec Prefer: return=representation
      * @param id l'id du département
      * @param villeId l'id de la ville
-     * @return
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville supprimée si elle est demandée
      */
     @DeleteMapping("/{id}/villes/{villeId}")
-    public ResponseEntity<List<Ville>> deleteVille(@PathVariable long id, @PathVariable long villeId) throws ApiException {
-        departementService.deleteVille(id, villeId);
-        return ResponseEntity.ok(departementService.getVilles(id));
+    public ResponseEntity<VilleDto> deleteVille(@PathVariable long id, @PathVariable long villeId,
+                                                @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        VilleDto deleted = departementService.deleteVille(id, villeId, IfMatch.version(ifMatch));
+        if (deleted == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.REPRESENTATION) {
+            return ResponseEntity.ok().headers(preference.headers()).body(deleted);
+        }
+        return ResponseEntity.noContent().headers(preference.headers()).build();
     }
 
     /**
      * Mettre à jour une ville d'un département
+     * Répond avec la ville mise à jour, 204 avec Prefer: return=minimal, ou 400 si un champ est absent ou invalide
      * @param id l'id du département
      * @param villeId l'id de la ville
      * @param ville la ville à mettre à jour
-     * @return
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville mise à jour
      */
     @PutMapping("/{id}/villes/{villeId}")
-    public ResponseEntity<List<Ville>> updateVille(@PathVariable long id, @PathVariable long villeId, @RequestBody Ville ville ) throws ApiException  {
-        departementService.updateVille(id, villeId, ville);
-        return ResponseEntity.ok(departementService.getVilles(id));
+    public ResponseEntity<?> updateVille(@PathVariable long id, @PathVariable long villeId, @Valid @RequestBody VillePutDto ville, BindingResult bindingResult,
+                                         @RequestHeader(value = "Prefer", required = false) String prefer,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException  {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().get(0).getDefaultMessage());
+        }
+        VilleDto updated = departementService.updateVille(id, villeId, new Ville(ville.getNom(), ville.getNbHabitants()), IfMatch.version(ifMatch));
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.MINIMAL) {
+            return ResponseEntity.noContent().headers(preference.headers()).build();
+        }
+        return ResponseEntity.ok().headers(preference.headers()).body(updated);
     }
 
     /**
-     * Récupérer les villes d'un département par ordre croissant de nombre d'habitants
+     * Mettre à jour une partie d'une ville d'un département : seuls les champs présents dans le corps sont modifiés
+     * Répond comme PUT, ou 400 si un champ est invalide
      * @param id l'id du département
-     * @return List<Ville> la liste des villes
+     * @param villeId l'id de la ville
+     * @param patch les champs à modifier
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville mise à jour
+     */
+    @PatchMapping("/{id}/villes/{villeId}")
+    public ResponseEntity<?> patchVille(@PathVariable long id, @PathVariable long villeId, @Valid @RequestBody VillePatchDto patch, BindingResult bindingResult,
+                                        @RequestHeader(value = "Prefer", required = false) String prefer,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException  {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().get(0).getDefaultMessage());
+        }
+        VilleDto updated = departementService.patchVille(id, villeId, patch, IfMatch.version(ifMatch));
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.MINIMAL) {
+            return ResponseEntity.noContent().headers(preference.headers()).build();
+        }
+        return ResponseEntity.ok().headers(preference.headers()).body(updated);
+    }
+
+    /**
+     * Récupérer les villes d'un département par ordre décroissant de nombre d'habitants
+     * Avec limit, renvoie les N villes les plus peuplées
+     * @param id l'id du département
+     * @param after l'id de la dernière ville reçue (absent pour la première page)
+     * @param limit le nombre de villes par page
+     * @return CursorPage<VilleDto> la page de villes et le curseur de la page suivante
      */
     @GetMapping("/{id}/villes/desc")
-    public ResponseEntity<List<Ville>> getVillesDesc(@PathVariable long id) throws ApiException {
-        Departement departement = getDepartement(id).getBody();
-        assert departement != null;
-        return ResponseEntity.ok(departement.getVilles().stream().sorted((v1, v2) -> v2.getNbHabitants() - v1.getNbHabitants()).collect(Collectors.toList()));
+    public ResponseEntity<CursorPage<VilleDto>> getVillesDesc(@PathVariable long id, @RequestParam(required = false) Long after,
+                                                              @RequestParam(defaultValue = "100") int limit) throws ApiException {
+        return ResponseEntity.ok(CursorPage.of(departementService.getVillesDesc(id, after, limit), VilleDto::getId));
     }
 
     /**
@@ -160,27 +369,56 @@ public class DepartementController {
      * @param id l'id du département
      * @param min le minimum de nombre d'habitants
      * @param max le maximum de nombre d'habitants
-     * @return List<Ville> la liste des villes
+     * @param after l'id de la dernière ville reçue (absent pour la première page)
+     * @param limit le nombre de villes par page
+     * @return CursorPage<VilleDto> la page de villes et le curseur de la page suivante
      */
     @GetMapping("/{id}/villes/between")
-    public ResponseEntity<List<Ville>> getVillesBetween(@PathVariable long id, @RequestParam int min, @RequestParam int max) throws ApiException {
-        Departement departement = getDepartement(id).getBody();
-        assert departement != null;
-        return ResponseEntity.ok(departement.getVilles().stream().filter(v -> v.getNbHabitants() >= min && v.getNbHabitants() <= max).collect(Collectors.toList()));
+    public ResponseEntity<CursorPage<VilleDto>> getVillesBetween(@PathVariable long id, @RequestParam int min, @RequestParam int max, @RequestParam(required = false) Long after,
+                                                                 @RequestParam(defaultValue = "100") int limit) throws ApiException {
+        return ResponseEntity.ok(CursorPage.of(departementService.getVillesBetween(id, min, max, after, limit), VilleDto::getId));
     }
 
 
     /**
      * Exporter les département en CSV
+     * Le fichier est écrit au fil de la lecture en base
      *
-     * @return
+     * @return StreamingResponseBody le contenu du fichier CSV
      */
     @GetMapping("/export")
-    public String exportVilles(HttpServletResponse response) throws ApiException {
-        response.setContentType("text/csv");
-        response.setHeader("Content-Disposition", "attachment; filename=\"departements.csv\"");
-        return departementService.exportDepartementsToCSV();
+    public ResponseEntity<StreamingResponseBody> exportVilles() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                departementService.exportDepartementsToCSV(outputStream);
+            } catch (ApiException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"departements.csv\"")
+                .body(body);
     }
 
-
+    /**
+     * Exporter les départements, avec les noms de leurs villes, en JSON (Accept: application/json)
+     * Le tableau est écrit au fil de la lecture en base, sans liste intermédiaire
+     *
+     * @return StreamingResponseBody le contenu du fichier JSON
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportJson() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                departementService.exportDepartementsToJson(outputStream);
+            } catch (ApiException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"departements.json\"")
+                .body(body);
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.demo.controller;
+
+/**
+ * Lecture de l'en-tête If-Match des écritures conditionnelles (RFC 9110)
+ * Les ETags de l'API sont des ETags forts qui contiennent la version de la ressource et le format de la représentation,
+ * par exemple "3-json" ou "3-cbor" : toutes les représentations d'une même version correspondent à cette version.
+ * Un ETag sans format ("3") est encore accepté. Un ETag faible (W/"3") ne correspond jamais : If-Match compare les ETags forts.
+ */
+final class IfMatch {
+
+    /**
+     * Version qui ne correspond à aucune ressource : l'écriture sera refusée (412)
+     */
+    static final long NONE = -1;
+
+    private IfMatch() {
+    }
+
+    /**
+     * Lire la version attendue dans un en-tête If-Match
+     *
+     * @param header la valeur de l'en-tête, éventuellement null
+     * @return Long la version attendue, null sans en-tête ou avec *, NONE pour un ETag faible ou inconnu
+     */
+    static Long version(String header) {
+        if (header == null || header.isBlank() || header.trim().equals("*")) {
+            return null;
+        }
+        String etag = header.trim();
+        if (etag.length() < 2 || !etag.startsWith("\"") || !etag.endsWith("\"")) {
+            return NONE;
+        }
+        String value = etag.substring(1, etag.length() - 1);
+        int dash = value.indexOf('-');
+        if (dash >= 0) {
+            if (!Representation.isFormat(value.substring(dash + 1))) {
+                return NONE;
+            }
+            value = value.substring(0, dash);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.controller;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.Locale;
+
+/**
+ * Préférence de retour envoyée par le client dans l'en-tête Prefer (RFC 7240)
+ * RESOURCE (en-tête absent) : la réponse ne contient que la ressource modifiée
+ * MINIMAL (return=minimal) : pas de corps, seulement le statut et l'en-tête Location
+ * REPRESENTATION (return=representation) : la ressource modifiée, même après une suppression ou une mise à jour
+ * qui répondraient sinon 204 ; la collection n'est jamais relue
+ */
+enum Prefer {
+    RESOURCE, MINIMAL, REPRESENTATION;
+
+    /**
+     * Nom de l'en-tête renvoyé quand une préférence explicite a été appliquée
+     */
+    static final String APPLIED = "Preference-Applied";
+
+    /**
+     * Lire la préférence de retour d'un en-tête Prefer
+     *
+     * @param header la valeur de l'en-tête, éventuellement null
+     * @return Prefer la préférence, RESOURCE par défaut
+     */
+    static Prefer of(String header) {
+        if (header != null) {
+            for (String token : header.split("[,;]")) {
+                String value = token.trim().toLowerCase(Locale.ROOT);
+                if (value.equals("return=minimal")) {
+                    return MINIMAL;
+                }
+                if (value.equals("return=representation")) {
+                    return REPRESENTATION;
+                }
+            }
+        }
+        return RESOURCE;
+    }
+
+    /**
+     * En-têtes à ajouter à la réponse : Preference-Applied quand une préférence explicite a été appliquée
+     *
+     * @return HttpHeaders les en-têtes, vides par défaut
+     */
+    HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        if (this != RESOURCE) {
+            headers.set(APPLIED, "return=" + name().toLowerCase(Locale.ROOT));
+        }
+        return headers;
+    }
+}
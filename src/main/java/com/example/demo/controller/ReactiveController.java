@@ -0,0 +1,110 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.service.ReactiveReadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * Contrôleur de lecture non bloquante des villes et des départements
+ * Les réponses sont des Flux et des Mono : le thread de la requête est rendu dès que la lecture est lancée,
+ * et la réponse est écrite quand les données arrivent.
+ * Les listes sont envoyées en flux NDJSON (Accept: application/x-ndjson) une ville après l'autre, la lecture suivant
+ * l'écriture de la réponse (backpressure), ou en tableau JSON une fois la page lue. Pour la page suivante,
+ * le client repasse l'id du dernier élément reçu dans le paramètre after.
+ */
+@RestController
+@RequestMapping("/reactive")
+public class ReactiveController {
+
+    @Autowired
+    private ReactiveReadService reactiveReadService;
+
+    /**
+     * Récupérer les villes, triées par id
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto>
+     */
+    @GetMapping(value = "/villes", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<VilleDto> getVilles(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        return reactiveReadService.getVilles(after, limit);
+    }
+
+    /**
+     * Récupérer une ville par son id
+     * @param id l'id de la ville
+     * @return VilleDto la ville, 404 si elle n'existe pas
+     */
+    @GetMapping("/villes/{id}")
+    public Mono<ResponseEntity<VilleDto>> getVille(@PathVariable long id) {
+        return reactiveReadService.getVille(id).map(ResponseEntity::ok).defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Autocompléter un nom de ville
+     * @param prefix le début des mots du nom
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto> les villes trouvées, les plus peuplées d'abord
+     */
+    @GetMapping(value = "/villes/search", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<VilleDto> searchVilles(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return reactiveReadService.searchVilles(prefix, limit);
+    }
+
+    /**
+     * Récupérer les villes entre deux populations, par population croissante
+     * @param min la population minimale
+     * @param max la population maximale
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto>
+     */
+    @GetMapping(value = "/villes/between", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<VilleDto> getVillesBetween(@RequestParam int min, @RequestParam int max,
+                                           @RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        return reactiveReadService.getVillesBetween(min, max, after, limit);
+    }
+
+    /**
+     * Récupérer les départements, triés par id, sans leurs villes
+     * @param after l'id du dernier département reçu (0 pour la première page)
+     * @param limit le nombre de départements
+     * @return Flux<DepartementDto>
+     */
+    @GetMapping(value = "/departements", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<DepartementDto> getDepartements(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) {
+        return reactiveReadService.getDepartements(after, limit);
+    }
+
+    /**
+     * Récupérer un département par son id, sans ses villes
+     * @param id l'id du département
+     * @return DepartementDto le département, 404 s'il n'existe pas
+     */
+    @GetMapping("/departements/{id}")
+    public Mono<ResponseEntity<DepartementDto>> getDepartement(@PathVariable long id) {
+        return reactiveReadService.getDepartement(id).map(ResponseEntity::ok).defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Récupérer les villes d'un département, triées par id
+     * @param id l'id du département
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto> les villes, 404 si le département n'existe pas
+     */
+    @GetMapping(value = "/departements/{id}/villes", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<Flux<VilleDto>>> getVilles(@PathVariable long id, @RequestParam(defaultValue = "0") long after,
+                                                         @RequestParam(defaultValue = "100") int limit) {
+        return reactiveReadService.getVillesOfDepartement(id, after, limit)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Format de la représentation envoyée pour l'en-tête Accept d'une requête : json, cbor ou smile
+ * Même choix que les convertisseurs de Spring (BinaryFormatsConfig) : le type accepté de plus grande qualité l'emporte,
+ * JSON passe en premier pour un type générique (application/*, ou tout type) et reste le format par défaut.
+ * Il sert à donner un ETag différent à chaque format d'une même version de la ressource.
+ */
+final class Representation {
+
+    static final String JSON = "json";
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private static final String[] FORMATS = {JSON, "cbor", "smile"};
+
+    private static final MediaType[] TYPES = {MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE};
+
+    private Representation() {
+    }
+
+    /**
+     * Format de la représentation choisie pour une requête
+     *
+     * @param request la requête, pour l'en-tête Accept
+     * @return String json, cbor ou smile
+     */
+    static String format(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        // Tri stable : à qualité égale, l'ordre de l'en-tête est conservé
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType type : accepted) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            for (int i = 0; i < TYPES.length; i++) {
+                if (type.includes(TYPES[i])) {
+                    return FORMATS[i];
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Le format est-il l'un de ceux de l'API ?
+     */
+    static boolean isFormat(String format) {
+        for (String known : FORMATS) {
+            if (known.equals(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
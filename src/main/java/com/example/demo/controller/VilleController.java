@@ -1,15 +1,31 @@
 package com.example.demo.controller;
 
 import com.example.demo.ApiException;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.ImportResultDto;
+import com.example.demo.dto.VersionDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.dto.VillePatchDto;
+import com.example.demo.dto.VillePutDto;
 import com.example.demo.entity.Ville;
+import com.example.demo.service.VilleImportService;
 import com.example.demo.service.VilleService;
-import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.net.http.HttpHeaders;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -24,109 +40,275 @@ public class VilleController {
     @Autowired
     private VilleService villeService;
 
+    /**
+     * Service d'import en masse des villes
+     */
+    @Autowired
+    private VilleImportService villeImportService;
+
 
     /**
-     * Récupérer la liste des villes
-     * @return List<Ville> la liste des villes
+     * Récupérer la liste des villes, page par page à partir d'un curseur
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes par page
+     * @return CursorPage<VilleDto> la page de villes et le curseur de la page suivante
      */
     @GetMapping
-    public List<Ville> getVilles() throws ApiException {
-        return villeService.getVilles();
+    public CursorPage<VilleDto> getVilles(@RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) throws ApiException {
+        return CursorPage.of(villeService.getVilles(after, limit), VilleDto::getId);
+    }
+
+    /**
+     * Récupérer la liste des villes par numéro de page (?page=&size=&sort=)
+     * @param pageable le numéro et la taille de la page
+     * @return PagedModel<VilleDto> la page de villes
+     */
+    @GetMapping(params = "page")
+    public PagedModel<VilleDto> getVillesPage(@PageableDefault(size = 100, sort = "id") Pageable pageable) throws ApiException {
+        return new PagedModel<>(villeService.getVilles(pageable));
     }
 
     /**
      * Récupérer une ville par son id
+     * Répond 304 sans lire la ville si l'ETag (If-None-Match) ou la date (If-Modified-Since) n'ont pas changé
      * @param id l'id de la ville
-     * @return Ville la ville
+     * @param request la requête, pour les en-têtes conditionnels
+     * @return VilleDto la ville
      */
     @GetMapping("/{id}")
-    public Ville getVille(@PathVariable Integer id) throws ApiException {
-        return villeService.getVilleById(id);
+    public ResponseEntity<VilleDto> getVille(@PathVariable Integer id, WebRequest request) throws ApiException {
+        VersionDto version = villeService.getVersion(id);
+        if (version == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.checkNotModified(version.getEtag(Representation.format(request)), version.getLastModified())) {
+            return null;
+        }
+        return ResponseEntity.ok(villeService.getVilleById(id));
     }
 
 
     /**
      * Ajouter une ville
+     * Répond 201 avec l'en-tête Location et la ville créée (sans corps avec Prefer: return=minimal)
      * @param ville la ville à ajouter
-     * @return String message de confirmation
+     * @param prefer l'en-tête Prefer
+     * @return VilleDto la ville ajoutée, ou le message d'erreur de validation
      */
     @PostMapping
-    public String addVille(@Valid @RequestBody Ville ville, BindingResult bindingResult) throws ApiException {
+    public ResponseEntity<?> addVille(@Valid @RequestBody Ville ville, BindingResult bindingResult,
+                                      @RequestHeader(value = "Prefer", required = false) String prefer) throws ApiException {
         if (bindingResult.hasErrors()) {
-            return bindingResult.getAllErrors().get(0).getDefaultMessage();
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().get(0).getDefaultMessage());
         }
-        villeService.addVille(ville);
-        return "Ville ajoutée";
+        VilleDto created = villeService.addVille(ville);
+        Prefer preference = Prefer.of(prefer);
+        ResponseEntity.BodyBuilder response = ResponseEntity.created(
+                ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(created.getId()).toUri()).headers(preference.headers());
+        return preference == Prefer.MINIMAL ? response.build() : response.body(created);
     }
 
 
     /**
      * Supprimer une ville
+     * Répond 204, ou la ville supprimée avec Prefer: return=representation
      * @param id l'id de la ville à supprimer
-     * @return List<Ville> la liste des villes
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville supprimée si elle est demandée
      */
     @DeleteMapping("/{id}")
-    public List<Ville> deleteVille(@PathVariable Integer id) throws ApiException {
-        villeService.deleteVille(id);
-        return villeService.getVilles();
+    public ResponseEntity<VilleDto> deleteVille(@PathVariable Integer id,
+                                                @RequestHeader(value = "Prefer", required = false) String prefer,
+                                                @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        VilleDto deleted = villeService.deleteVille(id, IfMatch.version(ifMatch));
+        if (deleted == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.REPRESENTATION) {
+            return ResponseEntity.ok().headers(preference.headers()).body(deleted);
+        }
+        return ResponseEntity.noContent().headers(preference.headers()).build();
     }
 
 
     /**
      * Mettre à jour une ville
+     * Répond avec la ville mise à jour, 204 avec Prefer: return=minimal, ou 400 si un champ est absent ou invalide
      * @param id l'id de la ville à mettre à jour
      * @param ville la ville mise à jour
-     * @return List<Ville> la liste des villes
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville mise à jour
      */
     @PutMapping("/{id}")
-    public List<Ville> updateVille(@PathVariable Integer id, @RequestBody Ville ville) throws ApiException {
-        villeService.updateVille(id, ville);
-        return villeService.getVilles();
+    public ResponseEntity<?> updateVille(@PathVariable Integer id, @Valid @RequestBody VillePutDto ville, BindingResult bindingResult,
+                                         @RequestHeader(value = "Prefer", required = false) String prefer,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().get(0).getDefaultMessage());
+        }
+        VilleDto updated = villeService.updateVille(id, new Ville(ville.getNom(), ville.getNbHabitants()), IfMatch.version(ifMatch));
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.MINIMAL) {
+            return ResponseEntity.noContent().headers(preference.headers()).build();
+        }
+        return ResponseEntity.ok().headers(preference.headers()).body(updated);
+    }
+
+
+    /**
+     * Mettre à jour une partie d'une ville : seuls les champs présents dans le corps sont modifiés
+     * Répond comme PUT, ou 400 si un champ est invalide
+     * @param id l'id de la ville à mettre à jour
+     * @param patch les champs à modifier
+     * @param prefer l'en-tête Prefer
+     * @param ifMatch l'ETag attendu (If-Match), 412 si la ressource a changé entre-temps
+     * @return VilleDto la ville mise à jour
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> patchVille(@PathVariable Integer id, @Valid @RequestBody VillePatchDto patch, BindingResult bindingResult,
+                                        @RequestHeader(value = "Prefer", required = false) String prefer,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch) throws ApiException {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().get(0).getDefaultMessage());
+        }
+        VilleDto updated = villeService.patchVille(id, patch, IfMatch.version(ifMatch));
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Prefer preference = Prefer.of(prefer);
+        if (preference == Prefer.MINIMAL) {
+            return ResponseEntity.noContent().headers(preference.headers()).build();
+        }
+        return ResponseEntity.ok().headers(preference.headers()).body(updated);
+    }
+
+
+    /**
+     * Importer des villes en masse depuis un fichier CSV (text/csv) ou NDJSON (application/x-ndjson)
+     * Le fichier est lu au fil de l'eau et inséré par lots, chaque ligne doit donner le departementId de la ville
+     * @param contentType le format du fichier
+     * @param body le contenu du fichier
+     * @return ImportResultDto le nombre de villes acceptées et rejetées
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ImportResultDto importVilles(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) throws ApiException {
+        return villeImportService.importVilles(body, importFormat(contentType), null);
+    }
+
+    /**
+     * Format d'import correspondant au type de contenu de la requête
+     * @param contentType le type de contenu
+     * @return VilleImportService.Format le format
+     */
+    static VilleImportService.Format importFormat(MediaType contentType) {
+        return contentType.isCompatibleWith(MediaType.parseMediaType("text/csv")) ? VilleImportService.Format.CSV : VilleImportService.Format.NDJSON;
     }
 
 
     /**
-     * Rechercher les villes par nom
+     * Autocompléter un nom de ville, sans accents ni majuscules
      *
-     * @param prefix
-     * @return
+     * @param prefix le texte saisi
+     * @param limit le nombre de villes à renvoyer
+     * @return List<VilleDto> les villes trouvées, les plus peuplées d'abord
      */
     @GetMapping("/search")
-    public List<Ville> searchVillesLike(@RequestParam String prefix) throws ApiException {
-        prefix = "%" + prefix + "%";
-        return villeService.getVillesByNameStartingWith(prefix);
+    public List<VilleDto> searchVillesLike(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) throws ApiException {
+        return villeService.getVillesByNameStartingWith(prefix, limit);
     }
 
     /**
-     * Rechercher les villes par population minimale
+     * Rechercher les villes par population minimale, triées par population croissante
      * @param min
+     * @param after le curseur
+     * @param limit le nombre de villes par page
      * @return
      */
     @GetMapping("/min")
-    public List<Ville> searchVillesByMin(@RequestParam int min) throws ApiException {
-        return villeService.getVillesByPopulationGreaterThan(min);
+    public CursorPage<VilleDto> searchVillesByMin(@RequestParam int min, @RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) throws ApiException {
+        return CursorPage.of(villeService.getVillesByPopulationGreaterThan(min, after, limit), VilleDto::getId);
     }
 
     /**
-     * Rechercher les villes par population minimale et maximale
+     * Rechercher les villes par population minimale et maximale, triées par population croissante
      * @param min
      * @param max
+     * @param after le curseur
+     * @param limit le nombre de villes par page
      * @return
      */
     @GetMapping("/between")
-    public List<Ville> searchVillesBetween(@RequestParam int min, @RequestParam int max) throws ApiException {
-        return villeService.getVillesByPopulationBetween(min, max);
+    public CursorPage<VilleDto> searchVillesBetween(@RequestParam int min, @RequestParam int max, @RequestParam(defaultValue = "0") long after, @RequestParam(defaultValue = "100") int limit) throws ApiException {
+        return CursorPage.of(villeService.getVillesByPopulationBetween(min, max, after, limit), VilleDto::getId);
+    }
+
+    /**
+     * Compter les villes entre deux populations
+     * @param min
+     * @param max
+     * @return le nombre de villes
+     */
+    @GetMapping("/between/count")
+    public long countVillesBetween(@RequestParam(defaultValue = "0") int min, @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int max) throws ApiException {
+        return villeService.countVillesByPopulationBetween(min, max);
+    }
+
+    /**
+     * Calculer la population totale des villes entre deux populations
+     * @param min
+     * @param max
+     * @return la population totale
+     */
+    @GetMapping("/between/sum")
+    public long sumVillesBetween(@RequestParam(defaultValue = "0") int min, @RequestParam(defaultValue = "" + Integer.MAX_VALUE) int max) throws ApiException {
+        return villeService.sumPopulationBetween(min, max);
     }
 
     /**
      * Exporter les villes en CSV
+     * Le fichier est écrit au fil de la lecture en base : les premières lignes partent avant la fin de la requête
      *
-     * @return
+     * @return StreamingResponseBody le contenu du fichier CSV
      */
     @GetMapping("/export")
-    public String exportVilles(HttpServletResponse response) throws ApiException {
-        response.setContentType("text/csv");
-        response.setHeader("Content-Disposition", "attachment; filename=\"villes.csv\"");
-        return villeService.exportVillesToCSV();
+    public ResponseEntity<StreamingResponseBody> exportVilles() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                villeService.exportVillesToCSV(outputStream);
+            } catch (ApiException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"villes.csv\"")
+                .body(body);
+    }
+
+    /**
+     * Exporter les villes en JSON (Accept: application/json)
+     * Le tableau est écrit au fil de la lecture en base, sans liste intermédiaire
+     *
+     * @return StreamingResponseBody le contenu du fichier JSON
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportJson() {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                villeService.exportVillesToJson(outputStream);
+            } catch (ApiException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"villes.json\"")
+                .body(body);
     }
-}
\ No newline at end of file
+}
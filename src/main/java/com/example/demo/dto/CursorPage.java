@@ -0,0 +1,88 @@
+package com.example.demo.dto;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Page de résultats paginée par curseur (keyset)
+ * Le client repasse la valeur de next dans le paramètre after pour obtenir la page suivante.
+ * La requête suivante reprend directement après le dernier id lu, une page profonde coûte donc autant que la première.
+ *
+ * @param <T> le type des éléments
+ */
+public class CursorPage<T> {
+
+    /**
+     * Nombre maximum d'éléments renvoyés par page
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private List<T> content;
+    private Long next;
+
+    public CursorPage() {
+    }
+
+    public CursorPage(List<T> content, Long next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    /**
+     * Construire une page à partir d'une tranche triée par id
+     *
+     * @param slice la tranche renvoyée par le repository
+     * @param id la fonction qui donne l'id d'un élément
+     * @return CursorPage<T> la page, next vaut null s'il n'y a plus d'éléments
+     */
+    public static <T> CursorPage<T> of(Slice<T> slice, ToLongFunction<T> id) {
+        List<T> content = slice.getContent();
+        Long next = slice.hasNext() && !content.isEmpty() ? id.applyAsLong(content.get(content.size() - 1)) : null;
+        return new CursorPage<>(content, next);
+    }
+
+    /**
+     * Requête de première page triée par id, bornée à MAX_LIMIT éléments
+     *
+     * @param limit le nombre d'éléments demandés
+     * @return Pageable
+     */
+    public static Pageable request(int limit) {
+        return request(limit, Sort.by("id"));
+    }
+
+    /**
+     * Requête de première page avec un tri donné, bornée à MAX_LIMIT éléments
+     * Sort.unsorted() quand la requête porte déjà son ORDER BY
+     *
+     * @param limit le nombre d'éléments demandés
+     * @param sort le tri
+     * @return Pageable
+     */
+    public static Pageable request(int limit, Sort sort) {
+        return PageRequest.of(0, Math.max(1, Math.min(limit, MAX_LIMIT)), sort);
+    }
+
+    // Getters et Setters
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public void setContent(List<T> content) {
+        this.content = content;
+    }
+
+    public Long getNext() {
+        return next;
+    }
+
+    public void setNext(Long next) {
+        this.next = next;
+    }
+}
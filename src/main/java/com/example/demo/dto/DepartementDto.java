@@ -1,19 +1,43 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 import java.util.List;
 
+/**
+ * Représentation d'un département renvoyée par l'API
+ * Elle est construite directement par les requêtes JPQL (select new ...), sans charger d'entité Departement.
+ * Selon le mode demandé, les villes sont absentes, ou réduites à leurs noms (villes) ou à leurs ids (villeIds).
+ * Il est écrit en JSON par DepartementDtoSerializer, sans introspection.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonSerialize(using = DepartementDtoSerializer.class)
 public class DepartementDto {
 
+    /**
+     * Contenu des villes renvoyé avec un département
+     */
+    public enum Villes {
+        AUCUNE, NOMS, IDS
+    }
 
     private Long id;
     private String nom;
     private String code;
     private List<String> villes;
+    private List<Long> villeIds;
 
     public DepartementDto() {
 
     }
 
+    public DepartementDto(Long id, String nom, String code) {
+        this.id = id;
+        this.nom = nom;
+        this.code = code;
+    }
+
     public DepartementDto(Long id, String nom, String code, List<String> villes) {
         this.id = id;
         this.nom = nom;
@@ -57,4 +81,12 @@ public class DepartementDto {
         this.villes = villes;
     }
 
+    public List<Long> getVilleIds() {
+        return villeIds;
+    }
+
+    public void setVilleIds(List<Long> villeIds) {
+        this.villeIds = villeIds;
+    }
+
 }
@@ -0,0 +1,80 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sérialiseur écrit à la main de DepartementDto, sur le modèle de VilleDtoSerializer
+ * Les listes de villes (noms ou ids) ne sont écrites que si elles ont été demandées.
+ */
+public class DepartementDtoSerializer extends StdSerializer<DepartementDto> {
+
+    static final SerializableString ID = new SerializedString("id");
+    static final SerializableString NOM = new SerializedString("nom");
+    static final SerializableString CODE = new SerializedString("code");
+    static final SerializableString VILLES = new SerializedString("villes");
+    static final SerializableString VILLE_IDS = new SerializedString("villeIds");
+
+    public DepartementDtoSerializer() {
+        super(DepartementDto.class);
+    }
+
+    @Override
+    public void serialize(DepartementDto departement, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        write(departement, generator);
+    }
+
+    /**
+     * Écrire un département en objet JSON
+     *
+     * @param departement le département
+     * @param generator le générateur dans lequel écrire
+     */
+    public static void write(DepartementDto departement, JsonGenerator generator) throws IOException {
+        generator.writeStartObject(departement);
+        writeHeader(departement.getId(), departement.getNom(), departement.getCode(), generator);
+        List<String> villes = departement.getVilles();
+        if (villes != null) {
+            generator.writeFieldName(VILLES);
+            generator.writeStartArray(villes, villes.size());
+            for (String ville : villes) {
+                generator.writeString(ville);
+            }
+            generator.writeEndArray();
+        }
+        List<Long> villeIds = departement.getVilleIds();
+        if (villeIds != null) {
+            generator.writeFieldName(VILLE_IDS);
+            generator.writeStartArray(villeIds, villeIds.size());
+            for (Long villeId : villeIds) {
+                generator.writeNumber(villeId);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Écrire l'id, le nom et le code d'un département, dans un objet déjà ouvert
+     */
+    private static void writeHeader(Long id, String nom, String code, JsonGenerator generator) throws IOException {
+        if (id != null) {
+            generator.writeFieldName(ID);
+            generator.writeNumber(id);
+        }
+        if (nom != null) {
+            generator.writeFieldName(NOM);
+            generator.writeString(nom);
+        }
+        if (code != null) {
+            generator.writeFieldName(CODE);
+            generator.writeString(code);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compte rendu d'un import de villes
+ * Seules les premières erreurs sont conservées pour que la réponse reste petite quel que soit le fichier
+ */
+public class ImportResultDto {
+
+    /**
+     * Nombre maximum de messages d'erreur renvoyés
+     */
+    public static final int MAX_ERRORS = 100;
+
+    private long accepted;
+    private long rejected;
+    private List<String> errors = new ArrayList<>();
+
+    public ImportResultDto() {
+    }
+
+    /**
+     * Compter des lignes insérées
+     *
+     * @param count le nombre de lignes
+     */
+    public void accept(int count) {
+        accepted += count;
+    }
+
+    /**
+     * Compter une ligne rejetée
+     *
+     * @param line le numéro de la ligne dans le fichier
+     * @param message la raison du rejet
+     */
+    public void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("ligne " + line + " : " + message);
+        }
+    }
+
+    // Getters et Setters
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(long accepted) {
+        this.accepted = accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
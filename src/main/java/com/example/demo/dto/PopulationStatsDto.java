@@ -0,0 +1,113 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Statistiques de population renvoyées par l'API
+ * Pour un département, elles sont lues dans la table de synthèse departement_stats.
+ * Pour la France entière, elles sont calculées à partir des statistiques de chaque département,
+ * qui sont renvoyées avec (departements).
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PopulationStatsDto {
+
+    private Long departementId;
+    private long nbVilles;
+    private long population;
+    private Integer minHabitants;
+    private Integer maxHabitants;
+    private List<PopulationStatsDto> departements;
+
+    public PopulationStatsDto() {
+
+    }
+
+    public PopulationStatsDto(Long departementId, long nbVilles, long population, Integer minHabitants, Integer maxHabitants) {
+        this.departementId = departementId;
+        this.nbVilles = nbVilles;
+        this.population = population;
+        this.minHabitants = minHabitants;
+        this.maxHabitants = maxHabitants;
+    }
+
+    /**
+     * Additionner les statistiques de plusieurs départements
+     *
+     * @param departements les statistiques de chaque département
+     * @return PopulationStatsDto les statistiques totales, avec celles de chaque département
+     */
+    public static PopulationStatsDto total(List<PopulationStatsDto> departements) {
+        PopulationStatsDto total = new PopulationStatsDto();
+        for (PopulationStatsDto d : departements) {
+            total.nbVilles += d.nbVilles;
+            total.population += d.population;
+            if (d.minHabitants != null && (total.minHabitants == null || d.minHabitants < total.minHabitants)) {
+                total.minHabitants = d.minHabitants;
+            }
+            if (d.maxHabitants != null && (total.maxHabitants == null || d.maxHabitants > total.maxHabitants)) {
+                total.maxHabitants = d.maxHabitants;
+            }
+        }
+        total.departements = departements;
+        return total;
+    }
+
+    // Getters et Setters
+
+    public Long getDepartementId() {
+        return departementId;
+    }
+
+    public void setDepartementId(Long departementId) {
+        this.departementId = departementId;
+    }
+
+    public long getNbVilles() {
+        return nbVilles;
+    }
+
+    public void setNbVilles(long nbVilles) {
+        this.nbVilles = nbVilles;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public void setPopulation(long population) {
+        this.population = population;
+    }
+
+    public Integer getMinHabitants() {
+        return minHabitants;
+    }
+
+    public void setMinHabitants(Integer minHabitants) {
+        this.minHabitants = minHabitants;
+    }
+
+    public Integer getMaxHabitants() {
+        return maxHabitants;
+    }
+
+    public void setMaxHabitants(Integer maxHabitants) {
+        this.maxHabitants = maxHabitants;
+    }
+
+    /**
+     * La population moyenne d'une ville, null s'il n'y a pas de ville
+     */
+    public Double getMoyenneHabitants() {
+        return nbVilles == 0 ? null : (double) population / nbVilles;
+    }
+
+    public List<PopulationStatsDto> getDepartements() {
+        return departements;
+    }
+
+    public void setDepartements(List<PopulationStatsDto> departements) {
+        this.departements = departements;
+    }
+}
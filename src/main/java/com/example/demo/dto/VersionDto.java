@@ -0,0 +1,43 @@
+package com.example.demo.dto;
+
+import java.time.Instant;
+
+/**
+ * Version d'une ressource, lue sans charger l'entité (select new ...)
+ * Elle donne l'ETag fort de chaque représentation et la date Last-Modified des réponses conditionnelles.
+ */
+public class VersionDto {
+
+    private final long version;
+    private final Instant modifiedAt;
+
+    public VersionDto(long version, Instant modifiedAt) {
+        this.version = version;
+        this.modifiedAt = modifiedAt;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
+    /**
+     * L'ETag fort d'une représentation de la ressource, par exemple "3-json"
+     * JSON, CBOR et Smile n'ont pas les mêmes octets : chaque format a son propre ETag.
+     *
+     * @param format le format de la représentation : json, cbor ou smile
+     */
+    public String getEtag(String format) {
+        return "\"" + version + "-" + format + "\"";
+    }
+
+    /**
+     * La date de dernière modification en millisecondes, -1 si elle est inconnue
+     */
+    public long getLastModified() {
+        return modifiedAt != null ? modifiedAt.toEpochMilli() : -1;
+    }
+}
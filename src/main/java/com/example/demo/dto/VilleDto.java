@@ -1,8 +1,18 @@
 package com.example.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Représentation d'une ville renvoyée par l'API
+ * Elle est construite directement par les requêtes JPQL (select new ...), sans charger d'entité Ville
+ * Elle est écrite en JSON par VilleDtoSerializer, sans introspection.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonSerialize(using = VilleDtoSerializer.class)
 public class VilleDto {
 
-    private Integer id;
+    private Long id;
     private String nom;
     private int nbHabitants;
     private DepartementDto departement;
@@ -11,7 +21,13 @@ public class VilleDto {
     public VilleDto() {
     }
 
-    public VilleDto(Integer id, String nom, int nbHabitants, DepartementDto departement) {
+    public VilleDto(Long id, String nom, int nbHabitants) {
+        this.id = id;
+        this.nom = nom;
+        this.nbHabitants = nbHabitants;
+    }
+
+    public VilleDto(Long id, String nom, int nbHabitants, DepartementDto departement) {
         this.id = id;
         this.nom = nom;
         this.nbHabitants = nbHabitants;
@@ -20,11 +36,11 @@ public class VilleDto {
 
     // Getters et Setters
 
-    public Integer getId() {
+    public Long getId() {
         return id;
     }
 
-    public void setId(Integer id) {
+    public void setId(Long id) {
         this.id = id;
     }
 
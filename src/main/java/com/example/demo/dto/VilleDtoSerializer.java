@@ -0,0 +1,56 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Sérialiseur écrit à la main de VilleDto, utilisé par Jackson à la place de l'introspection des getters
+ * Les noms de champs sont encodés une fois pour toutes (SerializedString) ; les champs nuls sont omis comme avec NON_NULL.
+ * write() sert aussi directement aux listes écrites en flux dans un JsonGenerator, sans passer par l'ObjectMapper.
+ */
+public class VilleDtoSerializer extends StdSerializer<VilleDto> {
+
+    static final SerializableString ID = new SerializedString("id");
+    static final SerializableString NOM = new SerializedString("nom");
+    static final SerializableString NB_HABITANTS = new SerializedString("nbHabitants");
+    static final SerializableString DEPARTEMENT = new SerializedString("departement");
+
+    public VilleDtoSerializer() {
+        super(VilleDto.class);
+    }
+
+    @Override
+    public void serialize(VilleDto ville, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        write(ville, generator);
+    }
+
+    /**
+     * Écrire une ville en objet JSON
+     *
+     * @param ville la ville
+     * @param generator le générateur dans lequel écrire
+     */
+    public static void write(VilleDto ville, JsonGenerator generator) throws IOException {
+        generator.writeStartObject(ville);
+        if (ville.getId() != null) {
+            generator.writeFieldName(ID);
+            generator.writeNumber(ville.getId());
+        }
+        if (ville.getNom() != null) {
+            generator.writeFieldName(NOM);
+            generator.writeString(ville.getNom());
+        }
+        generator.writeFieldName(NB_HABITANTS);
+        generator.writeNumber(ville.getNbHabitants());
+        if (ville.getDepartement() != null) {
+            generator.writeFieldName(DEPARTEMENT);
+            DepartementDtoSerializer.write(ville.getDepartement(), generator);
+        }
+        generator.writeEndObject();
+    }
+}
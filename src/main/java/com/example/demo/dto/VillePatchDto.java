@@ -0,0 +1,44 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Mise à jour partielle d'une ville (PATCH)
+ * Seuls les champs renseignés sont modifiés, avec les mêmes contraintes que l'entité Ville
+ */
+public class VillePatchDto {
+
+    @Size(min = 3, max = 50, message = "Le nom de la ville doit contenir entre 3 et 50 caractères")
+    private String nom;
+
+    @Positive(message = "Le nombre d'habitants de la ville doit être supérieur à 0")
+    private Integer nbHabitants;
+
+
+    public VillePatchDto() {
+    }
+
+    public VillePatchDto(String nom, Integer nbHabitants) {
+        this.nom = nom;
+        this.nbHabitants = nbHabitants;
+    }
+
+    // Getters et Setters
+
+    public String getNom() {
+        return nom;
+    }
+
+    public void setNom(String nom) {
+        this.nom = nom;
+    }
+
+    public Integer getNbHabitants() {
+        return nbHabitants;
+    }
+
+    public void setNbHabitants(Integer nbHabitants) {
+        this.nbHabitants = nbHabitants;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Remplacement d'une ville (PUT)
+ * Tous les champs sont obligatoires, avec les mêmes contraintes que l'entité Ville
+ * Le département n'en fait pas partie : il vient de l'URL ou reste celui de la ville
+ */
+public class VillePutDto {
+
+    @NotNull(message = "Le nom de la ville ne peut pas être nul")
+    @Size(min = 3, max = 50, message = "Le nom de la ville doit contenir entre 3 et 50 caractères")
+    private String nom;
+
+    @NotNull(message = "Le nombre d'habitants de la ville ne peut pas être nul")
+    @Positive(message = "Le nombre d'habitants de la ville doit être supérieur à 0")
+    private Integer nbHabitants;
+
+
+    public VillePutDto() {
+    }
+
+    public VillePutDto(String nom, Integer nbHabitants) {
+        this.nom = nom;
+        this.nbHabitants = nbHabitants;
+    }
+
+    // Getters et Setters
+
+    public String getNom() {
+        return nom;
+    }
+
+    public void setNom(String nom) {
+        this.nom = nom;
+    }
+
+    public Integer getNbHabitants() {
+        return nbHabitants;
+    }
+
+    public void setNbHabitants(Integer nbHabitants) {
+        this.nbHabitants = nbHabitants;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+/**
+ * Projection minimale d'une ville : son id, son nom et l'id de son département
+ * Utilisée pour remplir les villes de plusieurs départements en une seule requête
+ */
+public interface VilleRef {
+
+    Long getId();
+
+    String getNom();
+
+    Long getDepartementId();
+}
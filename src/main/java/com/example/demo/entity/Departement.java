@@ -1,8 +1,13 @@
 package com.example.demo.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.Max;
-import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +23,8 @@ import java.util.List;
  * @Id permet de dire à Spring que c'est l'identifiant de l'entité
  * @GeneratedValue(strategy = GenerationType.IDENTITY) permet de dire à Spring que l'identifiant est auto-généré
  * @OneToMany(mappedBy = "departement", cascade = CascadeType.ALL, orphanRemoval = true) permet de dire à Spring que c'est une relation OneToMany
+ * @Fetch(FetchMode.SUBSELECT) permet de charger les villes de tous les départements d'une même requête en une seule requête
+ * @Version permet à Hibernate de refuser l'écriture d'un département modifié entre-temps (verrouillage optimiste)
  * @see Ville
  */
 @Entity
@@ -33,8 +40,7 @@ public class Departement {
     /**
      * Le nom du département
      */
-    @Min(value = 3, message = "Le nom du département doit contenir au moins 3 caractères")
-    @Max(value = 50, message = "Le nom du département doit contenir au maximum 50 caractères")
+    @Size(min = 3, max = 50, message = "Le nom du département doit contenir entre 3 et 50 caractères")
     @Column(nullable = false)
     private String nom;
 
@@ -42,16 +48,33 @@ public class Departement {
      * Le code du département
      */
     @Column(nullable = false)
-    @Min(value = 2, message = "Le code du département doit contenir au moins 2 caractères")
-    @Max(value = 5, message = "Le code du département doit contenir au maximum 5 caractères")
+    @Size(min = 2, max = 5, message = "Le code du département doit contenir entre 2 et 5 caractères")
     private String code;
 
     /**
      * La liste des villes du département
+     * Chargée à la demande : un seul SELECT pour les villes de tous les départements lus par la même requête
      */
     @OneToMany(mappedBy = "departement", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
     private List<Ville> villes = new ArrayList<>();
 
+    /**
+     * La version du département, incrémentée à chaque modification du département ou de ses villes
+     * Elle sert au verrouillage optimiste et à l'ETag du département et de la liste de ses villes
+     */
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    /**
+     * La date de dernière modification du département ou de ses villes (en-tête Last-Modified)
+     */
+    @UpdateTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant modifiedAt;
+
 
     // Constructeurs
     public Departement() {
@@ -88,6 +111,14 @@ public class Departement {
         this.code = code;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
     public List<Ville> getVilles() {
         return villes;
     }
@@ -0,0 +1,79 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Entité représentant les statistiques de population d'un département
+ * C'est une table de synthèse : elle est mise à jour à chaque écriture sur les villes,
+ * pour lire les statistiques sans parcourir les villes.
+ * @Id departementId : une seule ligne par département, avec l'id du département
+ *
+ * @param departementId l'id du département
+ * @param nbVilles le nombre de villes du département
+ * @param population la population totale du département
+ * @param minHabitants la population de la plus petite ville, null si le département n'a pas de ville
+ * @param maxHabitants la population de la plus grande ville, null si le département n'a pas de ville
+ */
+@Entity
+@Table(name = "departement_stats")
+public class DepartementStats {
+
+    /**
+     * L'id du département
+     */
+    @Id
+    @Column(name = "departement_id")
+    private long departementId;
+
+    /**
+     * Le nombre de villes du département
+     */
+    @Column(nullable = false)
+    private long nbVilles;
+
+    /**
+     * La population totale du département
+     */
+    @Column(nullable = false)
+    private long population;
+
+    /**
+     * La population de la plus petite ville
+     */
+    private Integer minHabitants;
+
+    /**
+     * La population de la plus grande ville
+     */
+    private Integer maxHabitants;
+
+    public DepartementStats() {}
+
+    /**
+     * Statistiques d'un département sans ville
+     * @param departementId l'id du département
+     */
+    public DepartementStats(long departementId) {
+        this.departementId = departementId;
+    }
+
+    public long getDepartementId() {
+        return departementId;
+    }
+
+    public long getNbVilles() {
+        return nbVilles;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    public Integer getMinHabitants() {
+        return minHabitants;
+    }
+
+    public Integer getMaxHabitants() {
+        return maxHabitants;
+    }
+}
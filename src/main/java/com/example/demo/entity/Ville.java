@@ -2,8 +2,12 @@ package com.example.demo.entity;
 
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 /**
  * Entité Ville
@@ -14,8 +18,12 @@ import jakarta.validation.constraints.*;
  * @Id permet de dire à Spring que c'est l'identifiant de l'entité
  * @GeneratedValue(strategy = GenerationType.IDENTITY) permet de dire à Spring que l'identifiant est auto-généré
  * @Column(nullable = false) permet de dire à Spring que la colonne ne peut pas être nulle
- * @ManyToOne permet de dire à Spring que c'est une relation ManyToOne
+ * @ManyToOne(fetch = FetchType.LAZY) permet de dire à Spring que c'est une relation ManyToOne, chargée seulement si on y accède
  * @JoinColumn permet de dire à Spring que c'est une colonne de jointure
+ * @Index(departement_id, id) permet de lire une ville d'un département par une simple recherche d'index
+ * @Index(departement_id, nb_habitants) permet de trier et filtrer les villes d'un département par population dans l'index
+ * @Version permet à Hibernate de refuser l'écriture d'une ville modifiée entre-temps (verrouillage optimiste)
+ * @UpdateTimestamp permet à Hibernate de renseigner la date de modification à chaque écriture
  *
  * @param id l'identifiant de la ville
  * @param nom le nom de la ville
@@ -24,6 +32,10 @@ import jakarta.validation.constraints.*;
  *
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_ville_departement_id", columnList = "departement_id, id"),
+        @Index(name = "idx_ville_departement_nb_habitants", columnList = "departement_id, nb_habitants")
+})
 public class Ville {
 
 
@@ -47,8 +59,7 @@ public class Ville {
      * Le nombre d'habitants de la ville
      */
     @NotNull(message = "Le nombre d'habitants de la ville ne peut pas être nul")
-    @Size(min = 10, message = "Le nombre d'habitants de la ville doit être supérieur à 0")
-    @NotBlank
+    @Positive(message = "Le nombre d'habitants de la ville doit être supérieur à 0")
     @Column(nullable = false)
     private int nbHabitants;
 
@@ -56,12 +67,28 @@ public class Ville {
     /**
      * Le département de la ville
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "departement_id")
     @NotNull(message = "Le département de la ville ne peut pas être nul")
     @JsonBackReference
     private Departement departement;
 
+    /**
+     * La version de la ville, incrémentée à chaque modification
+     * Elle sert au verrouillage optimiste et à l'ETag de la ville
+     */
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long version;
+
+    /**
+     * La date de dernière modification de la ville (en-tête Last-Modified)
+     */
+    @UpdateTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant modifiedAt;
+
 
     // Constructeurs
     public Ville() {}
@@ -111,6 +138,14 @@ public class Ville {
         this.departement = departement;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getModifiedAt() {
+        return modifiedAt;
+    }
+
 
 
     @Override
@@ -0,0 +1,111 @@
+package com.example.demo.event;
+
+import com.example.demo.entity.Ville;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Événement publié par les services à chaque écriture sur les villes
+ * Il donne l'état de la ville après un ajout ou une modification, et avant une suppression.
+ * Une modification donne aussi l'état d'avant, lu (et verrouillé) juste avant l'UPDATE.
+ * Un événement "en masse" (import, création d'un département avec ses villes) ne donne aucun état :
+ * les écouteurs doivent alors considérer que toutes les villes des départements concernés ont pu changer.
+ * Les écouteurs le reçoivent dans la transaction qui l'a publié (@EventListener) ou après son commit (@TransactionalEventListener).
+ */
+public class VilleChangedEvent {
+
+    /**
+     * Type d'écriture
+     */
+    public enum Type {
+        ADDED, UPDATED, DELETED, BULK
+    }
+
+    /**
+     * L'état d'une ville à un instant donné
+     *
+     * @param id l'id de la ville
+     * @param nom le nom de la ville
+     * @param nbHabitants le nombre d'habitants de la ville
+     * @param departementId l'id du département de la ville, null s'il n'est pas renseigné
+     */
+    public record Etat(long id, String nom, int nbHabitants, Long departementId) {
+
+        public static Etat of(Ville ville) {
+            Long departementId = ville.getDepartement() != null ? ville.getDepartement().getId() : null;
+            return new Etat(ville.getId(), ville.getNom(), ville.getNbHabitants(), departementId);
+        }
+    }
+
+    private final Type type;
+
+    /**
+     * La ville ajoutée, modifiée ou supprimée
+     */
+    private final Etat ville;
+
+    /**
+     * L'état de la ville avant une modification, null pour les autres écritures
+     */
+    private final Etat ancien;
+
+    /**
+     * Les départements touchés par une écriture en masse
+     */
+    private final Set<Long> departementIds;
+
+    private VilleChangedEvent(Type type, Etat ville, Etat ancien, Set<Long> departementIds) {
+        this.type = type;
+        this.ville = ville;
+        this.ancien = ancien;
+        this.departementIds = departementIds;
+    }
+
+    public static VilleChangedEvent added(Ville ville) {
+        return new VilleChangedEvent(Type.ADDED, Etat.of(ville), null, null);
+    }
+
+    public static VilleChangedEvent updated(Etat ancien, Etat ville) {
+        return new VilleChangedEvent(Type.UPDATED, ville, ancien, null);
+    }
+
+    public static VilleChangedEvent deleted(Ville ville) {
+        return new VilleChangedEvent(Type.DELETED, Etat.of(ville), null, null);
+    }
+
+    public static VilleChangedEvent bulk(Collection<Long> departementIds) {
+        return new VilleChangedEvent(Type.BULK, null, null, Set.copyOf(departementIds));
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isBulk() {
+        return type == Type.BULK;
+    }
+
+    /**
+     * L'état de la ville : après un ajout ou une modification, avant une suppression, null pour une écriture en masse
+     */
+    public Etat getVille() {
+        return ville;
+    }
+
+    /**
+     * L'état de la ville avant une modification, null pour les autres écritures
+     */
+    public Etat getAncien() {
+        return ancien;
+    }
+
+    public Set<Long> getDepartementIds() {
+        return departementIds;
+    }
+
+    @Override
+    public String toString() {
+        return "VilleChangedEvent{" + type + ", " + (isBulk() ? departementIds : ville) + "}";
+    }
+}
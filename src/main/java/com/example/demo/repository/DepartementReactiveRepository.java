@@ -0,0 +1,63 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.DepartementDto;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repository non bloquant des départements, en SQL sur R2DBC
+ * Les départements sont lus sans leurs villes, qui se lisent page par page avec VilleReactiveRepository.
+ */
+@Repository
+public class DepartementReactiveRepository {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    /**
+     * Récupérer un département par son id
+     * @param id l'id du département
+     * @return Mono<DepartementDto> vide si le département n'existe pas
+     */
+    public Mono<DepartementDto> findDtoById(long id) {
+        return databaseClient.sql("select id, nom, code from departement where id = :id")
+                .bind("id", id)
+                .map(DepartementReactiveRepository::toDto)
+                .one();
+    }
+
+    /**
+     * Récupérer les départements après un curseur, triés par id
+     * @param after l'id du dernier département de la page précédente
+     * @param limit le nombre de départements
+     * @return Flux<DepartementDto>
+     */
+    public Flux<DepartementDto> findDtoByIdGreaterThan(long after, int limit) {
+        return databaseClient.sql("select id, nom, code from departement where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(DepartementReactiveRepository::toDto)
+                .all();
+    }
+
+    /**
+     * Savoir si un département existe
+     * @param id l'id du département
+     * @return Mono<Boolean>
+     */
+    public Mono<Boolean> existsById(long id) {
+        return databaseClient.sql("select 1 from departement where id = :id")
+                .bind("id", id)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    private static DepartementDto toDto(Readable row) {
+        return new DepartementDto(row.get("id", Long.class), row.get("nom", String.class), row.get("code", String.class));
+    }
+}
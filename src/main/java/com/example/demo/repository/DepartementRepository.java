@@ -1,8 +1,23 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.VersionDto;
 import com.example.demo.entity.Departement;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
 
 
 /**
@@ -14,4 +29,119 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface DepartementRepository extends JpaRepository<Departement, Long> {
 
+    /**
+     * Récupérer un département et ses villes en une seule requête (jointure)
+     * A utiliser quand on modifie la liste des villes du département
+     *
+     * @param id
+     * @return Optional<Departement>
+     */
+    @EntityGraph(attributePaths = "villes")
+    Optional<Departement> findWithVillesById(long id);
+
+    /**
+     * Récupérer les ids de tous les départements
+     *
+     * @return List<Long>
+     */
+    @Query("select d.id from Departement d")
+    List<Long> findAllIds();
+
+    /**
+     * Récupérer un département par son id, sans charger l'entité
+     *
+     * @param id
+     * @return Optional<DepartementDto>
+     */
+    @Query("select new com.example.demo.dto.DepartementDto(d.id, d.nom, d.code) from Departement d where d.id = :id")
+    Optional<DepartementDto> findDtoById(@Param("id") long id);
+
+    /**
+     * Récupérer tous les départements, triés par id
+     *
+     * @return List<DepartementDto>
+     */
+    @Query("select new com.example.demo.dto.DepartementDto(d.id, d.nom, d.code) from Departement d order by d.id")
+    List<DepartementDto> findAllDto();
+
+    /**
+     * Récupérer une page de départements par numéro de page
+     *
+     * @param pageable
+     * @return Page<DepartementDto>
+     */
+    @Query(value = "select new com.example.demo.dto.DepartementDto(d.id, d.nom, d.code) from Departement d",
+            countQuery = "select count(d) from Departement d")
+    Page<DepartementDto> findAllDto(Pageable pageable);
+
+    /**
+     * Récupérer une page de départements après un curseur
+     *
+     * @param id le curseur (id du dernier département de la page précédente)
+     * @param pageable la taille et le tri de la page
+     * @return Slice<DepartementDto>
+     */
+    @Query("select new com.example.demo.dto.DepartementDto(d.id, d.nom, d.code) from Departement d where d.id > :id")
+    Slice<DepartementDto> findDtoByIdGreaterThan(@Param("id") long id, Pageable pageable);
+
+    /**
+     * Récupérer un lot de départements dont l'id est supérieur au curseur, triés par id
+     * Chaque appel a sa propre transaction courte en lecture seule : l'export CSV n'en garde aucune ouverte entre deux lots
+     *
+     * @param id le dernier id du lot précédent (0 pour le premier lot)
+     * @param limit la taille du lot
+     * @return List<Departement>
+     */
+    @Transactional(readOnly = true)
+    List<Departement> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    /**
+     * Récupérer un lot de départements dont l'id est supérieur au curseur, triés par id, sans charger les entités
+     * Chaque appel a sa propre transaction courte en lecture seule : l'export JSON n'en garde aucune ouverte entre deux lots
+     *
+     * @param id le dernier id du lot précédent (0 pour le premier lot)
+     * @param limit la taille du lot
+     * @return List<DepartementDto>
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.demo.dto.DepartementDto(d.id, d.nom, d.code) from Departement d where d.id > :id order by d.id")
+    List<DepartementDto> findDtoByIdGreaterThanOrderById(@Param("id") long id, Limit limit);
+
+    /**
+     * Récupérer la version d'un département, pour répondre 304 sans lire le département ni ses villes
+     *
+     * @param id
+     * @return Optional<VersionDto>
+     */
+    @Query("select new com.example.demo.dto.VersionDto(d.version, d.modifiedAt) from Departement d where d.id = :id")
+    Optional<VersionDto> findVersionById(@Param("id") long id);
+
+    /**
+     * Mettre à jour le nom et le code d'un département en une seule requête, sans le lire
+     * La version n'est comparée que si elle est donnée (If-Match) : une mise à jour sans condition ne peut pas échouer
+     * parce qu'une écriture sur une de ses villes a incrémenté la version entre-temps (touch).
+     *
+     * @param id l'id du département
+     * @param nom le nouveau nom
+     * @param code le nouveau code
+     * @param version la version attendue (If-Match), null pour mettre à jour sans condition
+     * @param modifiedAt la date de la modification
+     * @return int le nombre de lignes modifiées, 0 si le département n'existe pas ou ne correspond pas à la condition
+     */
+    @Modifying
+    @Query("update Departement d set d.nom = :nom, d.code = :code, d.version = d.version + 1, d.modifiedAt = :modifiedAt " +
+            "where d.id = :id and (:version is null or d.version = :version)")
+    int update(@Param("id") long id, @Param("nom") String nom, @Param("code") String code,
+               @Param("version") Long version, @Param("modifiedAt") Instant modifiedAt);
+
+    /**
+     * Incrémenter la version d'un département dont les villes ont changé
+     *
+     * @param id
+     * @param modifiedAt la date de la modification
+     * @return int le nombre de lignes modifiées
+     */
+    @Modifying
+    @Query("update Departement d set d.version = d.version + 1, d.modifiedAt = :modifiedAt where d.id = :id")
+    int touch(@Param("id") long id, @Param("modifiedAt") Instant modifiedAt);
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.PopulationStatsDto;
+import com.example.demo.entity.DepartementStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository des statistiques de population des départements
+ * Les mises à jour sont faites par des requêtes UPDATE relatives (nbVilles = nbVilles + 1) :
+ * deux écritures concurrentes sur un même département ne s'écrasent pas.
+ */
+@Repository
+public interface DepartementStatsRepository extends JpaRepository<DepartementStats, Long> {
+
+    /**
+     * Récupérer les statistiques de tous les départements, triées par id de département
+     * Un département sans ligne de statistiques n'a pas de ville
+     *
+     * @return List<PopulationStatsDto>
+     */
+    @Query("select new com.example.demo.dto.PopulationStatsDto(d.id, coalesce(s.nbVilles, 0), coalesce(s.population, 0), s.minHabitants, s.maxHabitants) " +
+            "from Departement d left join DepartementStats s on s.departementId = d.id order by d.id")
+    List<PopulationStatsDto> findAllDto();
+
+    /**
+     * Récupérer les statistiques d'un département
+     *
+     * @param id l'id du département
+     * @return Optional<PopulationStatsDto> vide si le département n'existe pas
+     */
+    @Query("select new com.example.demo.dto.PopulationStatsDto(d.id, coalesce(s.nbVilles, 0), coalesce(s.population, 0), s.minHabitants, s.maxHabitants) " +
+            "from Departement d left join DepartementStats s on s.departementId = d.id where d.id = :id")
+    Optional<PopulationStatsDto> findDtoById(@Param("id") long id);
+
+    /**
+     * Compter une ville de plus dans un département
+     *
+     * @param id l'id du département
+     * @param nbHabitants la population de la ville
+     * @return int le nombre de lignes modifiées, 0 si le département n'a pas encore de statistiques
+     */
+    @Modifying
+    @Query("update DepartementStats s set s.nbVilles = s.nbVilles + 1, s.population = s.population + :nbHabitants, " +
+            "s.minHabitants = case when s.minHabitants is null or :nbHabitants < s.minHabitants then :nbHabitants else s.minHabitants end, " +
+            "s.maxHabitants = case when s.maxHabitants is null or :nbHabitants > s.maxHabitants then :nbHabitants else s.maxHabitants end " +
+            "where s.departementId = :id")
+    int addVille(@Param("id") long id, @Param("nbHabitants") int nbHabitants);
+
+    /**
+     * Retirer une ville d'un département
+     * La plus petite et la plus grande population sont relues dans l'index (departement_id, nb_habitants)
+     *
+     * @param id l'id du département
+     * @param nbHabitants la population de la ville
+     * @return int le nombre de lignes modifiées, 0 si le département n'a pas encore de statistiques
+     */
+    @Modifying
+    @Query("update DepartementStats s set s.nbVilles = s.nbVilles - 1, s.population = s.population - :nbHabitants, " +
+            "s.minHabitants = (select min(v.nbHabitants) from Ville v where v.departement.id = :id), " +
+            "s.maxHabitants = (select max(v.nbHabitants) from Ville v where v.departement.id = :id) " +
+            "where s.departementId = :id")
+    int removeVille(@Param("id") long id, @Param("nbHabitants") int nbHabitants);
+
+    /**
+     * Changer la population d'une ville d'un département
+     * Le total change de la différence. La plus petite et la plus grande population ne sont relues dans l'index
+     * (departement_id, nb_habitants) que si la ville les détenait et s'en éloigne ; sinon rien n'est relu.
+     *
+     * @param id l'id du département
+     * @param ancien l'ancienne population de la ville
+     * @param nbHabitants la nouvelle population de la ville
+     * @return int le nombre de lignes modifiées, 0 si le département n'a pas encore de statistiques
+     */
+    @Modifying
+    @Query("update DepartementStats s set s.population = s.population + :nbHabitants - :ancien, " +
+            "s.minHabitants = case when :nbHabitants <= s.minHabitants then :nbHabitants when :ancien > s.minHabitants then s.minHabitants " +
+            "else (select min(v.nbHabitants) from Ville v where v.departement.id = :id) end, " +
+            "s.maxHabitants = case when :nbHabitants >= s.maxHabitants then :nbHabitants when :ancien < s.maxHabitants then s.maxHabitants " +
+            "else (select max(v.nbHabitants) from Ville v where v.departement.id = :id) end " +
+            "where s.departementId = :id")
+    int updateVille(@Param("id") long id, @Param("ancien") int ancien, @Param("nbHabitants") int nbHabitants);
+
+    /**
+     * Recalculer les statistiques d'un département à partir de ses villes
+     *
+     * @param id l'id du département
+     * @return int le nombre de lignes modifiées, 0 si le département n'a pas encore de statistiques
+     */
+    @Modifying
+    @Query("update DepartementStats s set " +
+            "s.nbVilles = (select count(v) from Ville v where v.departement.id = :id), " +
+            "s.population = (select coalesce(sum(v.nbHabitants), 0) from Ville v where v.departement.id = :id), " +
+            "s.minHabitants = (select min(v.nbHabitants) from Ville v where v.departement.id = :id), " +
+            "s.maxHabitants = (select max(v.nbHabitants) from Ville v where v.departement.id = :id) " +
+            "where s.departementId = :id")
+    int refresh(@Param("id") long id);
+
+    /**
+     * Récupérer les départements qui n'ont pas encore de ligne de statistiques
+     *
+     * @return List<Long>
+     */
+    @Query("select d.id from Departement d where not exists (select s from DepartementStats s where s.departementId = d.id)")
+    List<Long> findDepartementIdsWithoutStats();
+}
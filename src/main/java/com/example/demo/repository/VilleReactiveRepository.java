@@ -0,0 +1,68 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.VilleDto;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repository non bloquant des villes, en SQL sur R2DBC
+ * Il lit la même table ville que VilleRepository, sans passer par JPA : les lignes sont émises au fil de leur lecture,
+ * à la vitesse demandée par l'abonné, sans bloquer de thread pendant l'attente de la base.
+ */
+@Repository
+public class VilleReactiveRepository {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    /**
+     * Récupérer une ville par son id
+     * @param id l'id de la ville
+     * @return Mono<VilleDto> vide si la ville n'existe pas
+     */
+    public Mono<VilleDto> findDtoById(long id) {
+        return databaseClient.sql("select id, nom, nb_habitants from ville where id = :id")
+                .bind("id", id)
+                .map(VilleReactiveRepository::toDto)
+                .one();
+    }
+
+    /**
+     * Récupérer les villes après un curseur, triées par id
+     * @param after l'id de la dernière ville de la page précédente
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto>
+     */
+    public Flux<VilleDto> findDtoByIdGreaterThan(long after, int limit) {
+        return databaseClient.sql("select id, nom, nb_habitants from ville where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(VilleReactiveRepository::toDto)
+                .all();
+    }
+
+    /**
+     * Récupérer les villes d'un département après un curseur, triées par id
+     * Parcours de l'index (departement_id, id)
+     * @param departementId l'id du département
+     * @param after l'id de la dernière ville de la page précédente
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto>
+     */
+    public Flux<VilleDto> findDtoByDepartementId(long departementId, long after, int limit) {
+        return databaseClient.sql("select id, nom, nb_habitants from ville where departement_id = :departementId and id > :after order by id limit :limit")
+                .bind("departementId", departementId)
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(VilleReactiveRepository::toDto)
+                .all();
+    }
+
+    private static VilleDto toDto(Readable row) {
+        return new VilleDto(row.get("id", Long.class), row.get("nom", String.class), row.get("nb_habitants", Integer.class));
+    }
+}
@@ -1,13 +1,27 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.VilleDto;
+import com.example.demo.dto.VersionDto;
+import com.example.demo.dto.VilleRef;
 import com.example.demo.entity.Ville;
+import com.example.demo.event.VilleChangedEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.awt.print.Pageable;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 
 /**
@@ -20,23 +34,152 @@ import java.util.List;
 @Repository
 public interface VilleRepository extends JpaRepository<Ville, Integer> {
     /**
-     * Récupérer des villes par leur nom
-     * @param nom
-     * @return List<Ville>
+     * Récupérer une ville par son id, sans charger l'entité
+     * @param id
+     * @return Optional<VilleDto>
      */
-    List<Ville> findByNomIsLike(String nom);
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.id = :id")
+    Optional<VilleDto> findDtoById(@Param("id") long id);
     /**
-     * Récupérer des villes par les nombres d'habitants
-     * @param nbHabitants
-     * @return List<Ville>
+     * Récupérer la version d'une ville, pour répondre 304 sans lire la ville
+     * @param id
+     * @return Optional<VersionDto>
      */
-    List<Ville> findByNbHabitantsIsGreaterThan(int nbHabitants);
+    @Query("select new com.example.demo.dto.VersionDto(v.version, v.modifiedAt) from Ville v where v.id = :id")
+    Optional<VersionDto> findVersionById(@Param("id") long id);
+
     /**
-     * Récupérer des villes par les nombres d'habitants (entre min et max)
-     *
+     * Récupérer l'état d'une ville en verrouillant sa ligne (select ... for update), sans la charger
+     * Lu juste avant l'UPDATE de la ville, qui prendrait de toute façon ce verrou : l'état d'avant ne peut plus changer
+     * jusqu'à la fin de la transaction.
+     * @param id l'id de la ville
+     * @return Optional<VilleChangedEvent.Etat>
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new com.example.demo.event.VilleChangedEvent$Etat(v.id, v.nom, v.nbHabitants, v.departement.id) from Ville v where v.id = :id")
+    Optional<VilleChangedEvent.Etat> findEtatForUpdateById(@Param("id") long id);
+
+    /**
+     * Mettre à jour une ville en une seule requête, sans la lire
+     * Les champs nuls ne sont pas modifiés, ce qui permet les mises à jour partielles (PATCH).
+     * Le département et la version, s'ils sont donnés, font partie de la condition : une ville d'un autre département
+     * ou modifiée entre-temps n'est pas mise à jour.
+     * @param id l'id de la ville
+     * @param departementId le département attendu de la ville, null pour ne pas le vérifier
+     * @param nom le nouveau nom, null pour le garder
+     * @param nbHabitants le nouveau nombre d'habitants, null pour le garder
+     * @param version la version attendue (If-Match), null pour mettre à jour sans condition
+     * @param modifiedAt la date de la modification
+     * @return int le nombre de lignes modifiées, 0 si la ville n'existe pas ou ne correspond pas à la condition
+     */
+    @Modifying
+    @Query("update Ville v set v.nom = coalesce(:nom, v.nom), v.nbHabitants = coalesce(:nbHabitants, v.nbHabitants), " +
+            "v.version = v.version + 1, v.modifiedAt = :modifiedAt " +
+            "where v.id = :id and (:departementId is null or v.departement.id = :departementId) " +
+            "and (:version is null or v.version = :version)")
+    int update(@Param("id") long id, @Param("departementId") Long departementId, @Param("nom") String nom,
+               @Param("nbHabitants") Integer nbHabitants, @Param("version") Long version, @Param("modifiedAt") Instant modifiedAt);
+    /**
+     * Récupérer toutes les villes, triées par id
+     * @return List<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v order by v.id")
+    List<VilleDto> findAllDto();
+    /**
+     * Récupérer une page de villes par numéro de page
+     * @param pageable
+     * @return Page<VilleDto>
+     */
+    @Query(value = "select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v",
+            countQuery = "select count(v) from Ville v")
+    Page<VilleDto> findAllDto(Pageable pageable);
+    /**
+     * Récupérer une page de villes après un curseur
+     * @param id le curseur (id de la dernière ville de la page précédente)
+     * @param pageable la taille et le tri de la page
+     * @return Slice<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.id > :id")
+    Slice<VilleDto> findDtoByIdGreaterThan(@Param("id") long id, Pageable pageable);
+    /**
+     * Récupérer les villes d'un département, sans charger le département
+     * @param departementId
+     * @return List<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.departement.id = :departementId order by v.id")
+    List<VilleDto> findDtoByDepartementId(@Param("departementId") long departementId);
+    /**
+     * Récupérer une ville d'un département, sans charger le département
+     * Lecture par l'index (departement_id, id)
+     * @param departementId
+     * @param id
+     * @return Optional<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.departement.id = :departementId and v.id = :id")
+    Optional<VilleDto> findDtoByDepartementIdAndId(@Param("departementId") long departementId, @Param("id") long id);
+    /**
+     * Récupérer l'entité d'une ville d'un département, pour la modifier
+     * @param departementId
+     * @param id
+     * @return Optional<Ville>
+     */
+    Optional<Ville> findByDepartementIdAndId(long departementId, long id);
+    /**
+     * Récupérer les villes d'un département par population décroissante, après un curseur (nbHabitants, id)
+     * Parcours de l'index (departement_id, nb_habitants) dans l'ordre, sans tri en mémoire
+     * @param departementId
+     * @param nbHabitants la population de la dernière ville de la page précédente
+     * @param id l'id de la dernière ville de la page précédente
+     * @param pageable la taille de la page
+     * @return Slice<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.departement.id = :departementId " +
+            "and (v.nbHabitants < :nbHabitants or (v.nbHabitants = :nbHabitants and v.id < :id)) order by v.nbHabitants desc, v.id desc")
+    Slice<VilleDto> findDtoByDepartementIdOrderByNbHabitantsDesc(@Param("departementId") long departementId, @Param("nbHabitants") int nbHabitants, @Param("id") long id, Pageable pageable);
+    /**
+     * Récupérer les villes d'un département entre deux populations, par population croissante, après un curseur (nbHabitants, id)
+     * @param departementId
      * @param min
      * @param max
+     * @param nbHabitants la population de la dernière ville de la page précédente
+     * @param id l'id de la dernière ville de la page précédente
+     * @param pageable la taille de la page
+     * @return Slice<VilleDto>
+     */
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.departement.id = :departementId " +
+            "and v.nbHabitants between :min and :max " +
+            "and (v.nbHabitants > :nbHabitants or (v.nbHabitants = :nbHabitants and v.id > :id)) order by v.nbHabitants, v.id")
+    Slice<VilleDto> findDtoByDepartementIdAndNbHabitantsBetween(@Param("departementId") long departementId, @Param("min") int min, @Param("max") int max,
+                                                                @Param("nbHabitants") int nbHabitants, @Param("id") long id, Pageable pageable);
+    /**
+     * Récupérer l'id et le nom des villes de plusieurs départements en une requête
+     * @param departementIds
+     * @return List<VilleRef>
+     */
+    @Query("select v.id as id, v.nom as nom, v.departement.id as departementId from Ville v where v.departement.id in :departementIds order by v.id")
+    List<VilleRef> findRefsByDepartementIdIn(@Param("departementIds") Collection<Long> departementIds);
+
+    /**
+     * Récupérer un lot de villes dont l'id est supérieur au curseur, triées par id
+     * Parcours par clé (keyset) : chaque lot est une lecture d'index, sans OFFSET
+     * Chaque appel a sa propre transaction courte en lecture seule : l'export CSV n'en garde aucune ouverte entre deux lots
+     *
+     * @param id le dernier id du lot précédent (0 pour le premier lot)
+     * @param limit la taille du lot
      * @return List<Ville>
      */
-    List<Ville> findByNbHabitantsBetween(int min, int max);
-}
\ No newline at end of file
+    @Transactional(readOnly = true)
+    List<Ville> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    /**
+     * Récupérer un lot de villes dont l'id est supérieur au curseur, triées par id, sans charger les entités
+     * Chaque appel a sa propre transaction courte en lecture seule : l'export JSON n'en garde aucune ouverte entre deux lots
+     *
+     * @param id le dernier id du lot précédent (0 pour le premier lot)
+     * @param limit la taille du lot
+     * @return List<VilleDto>
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.demo.dto.VilleDto(v.id, v.nom, v.nbHabitants) from Ville v where v.id > :id order by v.id")
+    List<VilleDto> findDtoByIdGreaterThanOrderById(@Param("id") long id, Limit limit);
+}
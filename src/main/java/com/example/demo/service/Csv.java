@@ -0,0 +1,139 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écriture et lecture des champs CSV selon la RFC 4180
+ * Un champ qui contient une virgule, un guillemet ou un saut de ligne est mis entre guillemets,
+ * ses guillemets sont doublés : "Saint-Denis, La Réunion" reste une seule colonne.
+ */
+final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * Écrire un champ CSV, entre guillemets si nécessaire
+     *
+     * @param value la valeur du champ
+     * @return String le champ prêt à être écrit
+     */
+    static String field(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Lecteur d'enregistrements CSV
+     * Un champ entre guillemets peut contenir des virgules, des guillemets doublés et des sauts de ligne :
+     * un enregistrement peut donc s'étendre sur plusieurs lignes du fichier. Les fins de ligne \n et \r\n sont acceptées.
+     */
+    static final class RecordReader {
+
+        private final Reader in;
+
+        /**
+         * Caractère lu d'avance, -2 s'il n'y en a pas
+         */
+        private int pushback = -2;
+
+        /**
+         * Numéro de la ligne courante du fichier, et de la première ligne du dernier enregistrement lu
+         */
+        private long line = 1;
+        private long recordLine;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Numéro de la ligne du fichier où commence le dernier enregistrement lu
+         */
+        long line() {
+            return recordLine;
+        }
+
+        /**
+         * Lire l'enregistrement suivant
+         *
+         * @return List<String> les champs, une liste d'un champ vide pour une ligne vide, null à la fin du fichier
+         * @throws IllegalArgumentException si un guillemet n'est pas fermé avant la fin du fichier
+         */
+        List<String> next() throws IOException {
+            recordLine = line;
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean start = true;
+            while (true) {
+                if (c == '"' && start) {
+                    readQuoted(field);
+                    start = false;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    start = true;
+                } else if (c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c == '\r' && peek() == '\n') {
+                    // la fin de ligne \r\n est traitée au tour suivant
+                } else {
+                    field.append((char) c);
+                    start = false;
+                }
+                c = read();
+            }
+        }
+
+        /**
+         * Lire la suite d'un champ entre guillemets, jusqu'au guillemet fermant
+         */
+        private void readQuoted(StringBuilder field) throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw new IllegalArgumentException("Guillemet non fermé");
+                }
+                if (c == '"') {
+                    if (peek() != '"') {
+                        return;
+                    }
+                    read();
+                }
+                field.append((char) c);
+            }
+        }
+
+        private int peek() throws IOException {
+            if (pushback == -2) {
+                pushback = in.read();
+            }
+            return pushback;
+        }
+
+        private int read() throws IOException {
+            int c = pushback != -2 ? pushback : in.read();
+            pushback = -2;
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+}
@@ -2,17 +2,57 @@ package com.example.demo.service;
 
 
 import com.example.demo.ApiException;
+import com.example.demo.BadRequestException;
+import com.example.demo.VersionConflictException;
+import com.example.demo.dto.VersionDto;
 import com.example.demo.entity.Departement;
 import com.example.demo.entity.Ville;
+import com.example.demo.event.VilleChangedEvent;
 import com.example.demo.repository.DepartementRepository;
+import com.example.demo.repository.VilleRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.DepartementDtoSerializer;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.dto.VillePatchDto;
+import com.example.demo.dto.VilleRef;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service de gestion des départements
+ * Chaque méthode publique est chronométrée (timer recensement.service, étiquettes class et method)
  */
 @Service
+@Timed(value = "recensement.service", description = "Durée des appels aux services")
 public class DepartementService {
 
 
@@ -25,14 +65,97 @@ public class DepartementService {
     @Autowired
     DepartementRepository DepartementRepository;
 
+    /**
+     * Repository des villes, utilisé pour lire les villes sans charger leur département
+     */
+    @Autowired
+    VilleRepository villeRepository;
+
+    /**
+     * Service des villes, qui fait les mises à jour des villes d'un département
+     */
+    @Autowired
+    private VilleService villeService;
+
+    /**
+     * Service des statistiques, dont la ligne est supprimée avec le département
+     */
+    @Autowired
+    private DepartementStatsService departementStatsService;
+
+    /**
+     * Publie un VilleChangedEvent à chaque écriture sur les villes, pour tenir à jour les index en mémoire et les statistiques des départements
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+
+    /**
+     * Nombre de départements lus par requête lors de l'export CSV
+     */
+    @Value("${app.export.batch-size:1000}")
+    private int exportBatchSize;
+
+    /**
+     * Fournit le JsonGenerator de l'export JSON, avec la configuration Jackson de l'application
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Valide le nom et le code d'un département mis à jour par une requête UPDATE
+     */
+    @Autowired
+    private Validator validator;
+
     /**
      * Récupérer la liste des départements
      *
-     * @return List<Departement> la liste des départements
+     * @return List<DepartementDto> la liste des départements, avec les noms de leurs villes
+     */
+    @Transactional(readOnly = true)
+    public List<DepartementDto> getDepartements() throws ApiException {
+        try {
+            List<DepartementDto> departements = DepartementRepository.findAllDto();
+            fillVilles(departements, DepartementDto.Villes.NOMS);
+            return departements;
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les départements");
+        }
+    }
+
+    /**
+     * Récupérer une page de départements après un curseur, triés par id
+     *
+     * @param after l'id du dernier département de la page précédente (0 pour la première page)
+     * @param limit le nombre de départements à renvoyer
+     * @param villes le contenu des villes à renvoyer avec chaque département
+     * @return Slice<DepartementDto> la page de départements
+     */
+    @Transactional(readOnly = true)
+    public Slice<DepartementDto> getDepartements(long after, int limit, DepartementDto.Villes villes) throws ApiException {
+        try {
+            Slice<DepartementDto> departements = DepartementRepository.findDtoByIdGreaterThan(after, CursorPage.request(limit));
+            fillVilles(departements.getContent(), villes);
+            return departements;
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les départements");
+        }
+    }
+
+    /**
+     * Récupérer une page de départements par numéro de page
+     *
+     * @param pageable le numéro, la taille et le tri de la page
+     * @param villes le contenu des villes à renvoyer avec chaque département
+     * @return Page<DepartementDto> la page de départements
      */
-    public List<Departement> getDepartements() throws ApiException {
+    @Transactional(readOnly = true)
+    public Page<DepartementDto> getDepartements(Pageable pageable, DepartementDto.Villes villes) throws ApiException {
         try {
-            return DepartementRepository.findAll();
+            Page<DepartementDto> departements = DepartementRepository.findAllDto(pageable);
+            fillVilles(departements.getContent(), villes);
+            return departements;
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les départements");
         }
@@ -43,24 +166,52 @@ public class DepartementService {
      * Récupérer un département par son id
      *
      * @param id l'id du département
-     * @return Departement le département
+     * @param villes le contenu des villes à renvoyer avec le département
+     * @return DepartementDto le département
+     */
+    @Transactional(readOnly = true)
+    public DepartementDto getDepartementById(Long id, DepartementDto.Villes villes) throws ApiException {
+        try {
+            DepartementDto departement = DepartementRepository.findDtoById(id).orElse(null);
+            if (departement != null) {
+                fillVilles(List.of(departement), villes);
+            }
+            return departement;
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer le département");
+        }
+    }
+    /**
+     * Récupérer la version d'un département, sans le lire
+     * La version change aussi quand les villes du département changent
+     *
+     * @param id l'id du département
+     * @return VersionDto la version du département, null s'il n'existe pas
      */
-    public Departement getDepartementById(Long id) throws ApiException {
+    @Transactional(readOnly = true)
+    public VersionDto getVersion(long id) throws ApiException {
         try {
-            return DepartementRepository.findById(id).orElse(null);
+            return DepartementRepository.findVersionById(id).orElse(null);
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer le département");
         }
     }
+
     /**
-     * Ajouter un département
+     * Ajouter un département, avec sa ligne de statistiques
      *
      * @param Departement le département à ajouter
      * @return Departement le département ajouté
      */
+    @Transactional
     public Departement addDepartement(Departement Departement) throws ApiException {
         try {
-            return DepartementRepository.save(Departement);
+            Departement saved = DepartementRepository.save(Departement);
+            departementStatsService.createStats(saved.getId());
+            if (saved.getVilles() != null && !saved.getVilles().isEmpty()) {
+                eventPublisher.publishEvent(VilleChangedEvent.bulk(List.of(saved.getId())));
+            }
+            return saved;
         } catch (Exception e) {
             throw new ApiException("Impossible d'ajouter le département");
         }
@@ -68,45 +219,90 @@ public class DepartementService {
 
     /**
      * Supprimer un département
+     * Le département et ses villes sont lus en une seule requête avant la suppression en cascade
      *
      * @param id l'id du département à supprimer
+     * @param version la version attendue du département (If-Match), null pour supprimer sans condition
+     * @return DepartementDto le département supprimé, null s'il n'existait pas
      */
-    public void deleteDepartement(Long id) throws ApiException {
+    @Transactional
+    public DepartementDto deleteDepartement(Long id, Long version) throws ApiException {
         try {
-            DepartementRepository.deleteById(id);
+            Departement departement = DepartementRepository.findWithVillesById(id).orElse(null);
+            if (departement != null) {
+                VersionConflictException.check(departement.getVersion(), version);
+                DepartementRepository.delete(departement);
+                // Le DELETE compare la version lue : une ville modifiée entre-temps la fait échouer ici (412), pas à la validation
+                DepartementRepository.flush();
+                departementStatsService.deleteStats(id);
+                for (Ville ville : departement.getVilles()) {
+                    eventPublisher.publishEvent(VilleChangedEvent.deleted(ville));
+                }
+                return new DepartementDto(departement.getId(), departement.getNom(), departement.getCode());
+            }
+            return null;
+        } catch (VersionConflictException e) {
+            throw e;
+        } catch (OptimisticLockingFailureException e) {
+            throw new VersionConflictException("La ressource a été modifiée pendant la suppression");
         } catch (Exception e) {
             throw new ApiException("Impossible de supprimer le département");
         }
     }
 
     /**
-     * Mettre à jour un département
+     * Mettre à jour le nom et le code d'un département, par une seule requête UPDATE sans le lire
+     * Les villes du département ne sont pas modifiées. Sans version attendue, la mise à jour réussit même si une écriture
+     * sur une ville a incrémenté la version du département entre-temps : pas de verrouillage optimiste à la validation.
+     * Si aucune ligne n'est modifiée alors qu'une version est attendue, le département est cherché
+     * pour distinguer un département absent (null) d'un département modifié entre-temps (412).
      *
      * @param Departement le département à mettre à jour
-     * @return Departement le département mis à jour
+     * @param version la version attendue du département (If-Match), null pour mettre à jour sans condition
+     * @return DepartementDto le département mis à jour, null s'il n'existe pas
      */
-
-    public Departement updateDepartement(Departement Departement) throws ApiException {
+    @Transactional
+    public DepartementDto updateDepartement(Departement Departement, Long version) throws ApiException {
+        validate("nom", Departement.getNom());
+        validate("code", Departement.getCode());
         try {
-            return DepartementRepository.save(Departement);
+            if (DepartementRepository.update(Departement.getId(), Departement.getNom(), Departement.getCode(), version, Instant.now()) == 0) {
+                if (version != null && DepartementRepository.existsById(Departement.getId())) {
+                    throw new VersionConflictException("La ressource a été modifiée : version " + version + " attendue");
+                }
+                return null;
+            }
+            return new DepartementDto(Departement.getId(), Departement.getNom(), Departement.getCode());
+        } catch (VersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new ApiException("Impossible de mettre à jour le département");
         }
     }
 
+    /**
+     * Valider un champ du département avec les contraintes de l'entité, l'UPDATE ne passant pas par la validation d'Hibernate
+     * Un champ nul ou invalide donne une réponse 400.
+     */
+    private void validate(String property, String value) throws ApiException {
+        if (value == null) {
+            throw new BadRequestException("Le " + property + " du département ne peut pas être nul");
+        }
+        for (ConstraintViolation<Departement> violation : validator.validateValue(Departement.class, property, value)) {
+            throw new BadRequestException(violation.getMessage());
+        }
+    }
+
     /**
      * Récupérer la liste des villes d'un département
      *
      * @param id l'id du département
-     * @return List<Ville> la liste des villes
+     * @return List<VilleDto> la liste des villes
      */
-    public List<Ville> getVilles(Long id) throws ApiException {
+    @Transactional(readOnly = true)
+    public List<VilleDto> getVilles(Long id) throws ApiException {
         try {
-            Departement departement = DepartementRepository.findById(id).orElse(null);
-            if (departement != null) {
-                return departement.getVilles();
-            }
-            return null;
+            return villeRepository.findDtoByDepartementId(id);
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les villes");
         }
@@ -117,35 +313,83 @@ public class DepartementService {
      *
      * @param id      l'id du département
      * @param idVille l'id de la ville
-     * @return Ville la ville
+     * @return VilleDto la ville
      */
-    public Ville getVille(Long id, Long idVille) throws ApiException {
+    @Transactional(readOnly = true)
+    public VilleDto getVille(Long id, Long idVille) throws ApiException {
         try {
-            Departement departement = DepartementRepository.findById(id).orElse(null);
-            if (departement != null) {
-                return departement.getVilles().stream().filter(v -> v.getId() == idVille).findFirst().orElse(null);
-            }
-            return null;
+            return villeRepository.findDtoByDepartementIdAndId(id, idVille).orElse(null);
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer la ville");
         }
     }
 
 
+    /**
+     * Récupérer les villes d'un département par ordre décroissant de population
+     * Le tri et la limite sont faits par la base : le coût dépend de la taille de la page, pas du département
+     *
+     * @param id    l'id du département
+     * @param after l'id de la dernière ville de la page précédente (null pour la première page)
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
+     */
+    @Transactional(readOnly = true)
+    public Slice<VilleDto> getVillesDesc(Long id, Long after, int limit) throws ApiException {
+        int nbHabitants = Integer.MAX_VALUE;
+        long idVille = Long.MAX_VALUE;
+        if (after != null) {
+            nbHabitants = getCursor(id, after).getNbHabitants();
+            idVille = after;
+        }
+        try {
+            return villeRepository.findDtoByDepartementIdOrderByNbHabitantsDesc(id, nbHabitants, idVille, CursorPage.request(limit, Sort.unsorted()));
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les villes");
+        }
+    }
+
+    /**
+     * Récupérer les villes d'un département entre deux populations, par ordre croissant de population
+     *
+     * @param id    l'id du département
+     * @param min   la population minimale
+     * @param max   la population maximale
+     * @param after l'id de la dernière ville de la page précédente (null pour la première page)
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
+     */
+    @Transactional(readOnly = true)
+    public Slice<VilleDto> getVillesBetween(Long id, int min, int max, Long after, int limit) throws ApiException {
+        int nbHabitants = Integer.MIN_VALUE;
+        long idVille = 0;
+        if (after != null) {
+            nbHabitants = getCursor(id, after).getNbHabitants();
+            idVille = after;
+        }
+        try {
+            return villeRepository.findDtoByDepartementIdAndNbHabitantsBetween(id, min, max, nbHabitants, idVille, CursorPage.request(limit, Sort.unsorted()));
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les villes");
+        }
+    }
+
     /**
      * Ajouter une ville à un département
      *
      * @param id    l'id du département
      * @param ville la ville à ajouter
-     * @return List<Ville> la liste des villes
+     * @return VilleDto la ville ajoutée, null si le département n'existe pas
      */
-    public List<Ville> addVille(Long id, Ville ville) throws ApiException {
+    @Transactional
+    public VilleDto addVille(Long id, Ville ville) throws ApiException {
         try {
             Departement departement = DepartementRepository.findById(id).orElse(null);
             if (departement != null) {
                 departement.addVille(ville);
-                DepartementRepository.save(departement);
-                return departement.getVilles();
+                Ville saved = villeRepository.save(ville);
+                eventPublisher.publishEvent(VilleChangedEvent.added(saved));
+                return new VilleDto(saved.getId(), saved.getNom(), saved.getNbHabitants());
             }
             return null;
         } catch (Exception e) {
@@ -158,17 +402,22 @@ public class DepartementService {
      *
      * @param id      l'id du département
      * @param idVille l'id de la ville à supprimer
-     * @return List<Ville> la liste des villes
+     * @param version la version attendue de la ville (If-Match), null pour supprimer sans condition
+     * @return VilleDto la ville supprimée, null si elle n'existait pas dans ce département
      */
-    public List<Ville> deleteVille(Long id, Long idVille) throws ApiException {
+    @Transactional
+    public VilleDto deleteVille(Long id, Long idVille, Long version) throws ApiException {
         try {
-            Departement departement = DepartementRepository.findById(id).orElse(null);
-            if (departement != null) {
-                departement.getVilles().removeIf(v -> v.getId() == idVille);
-                DepartementRepository.save(departement);
-                return departement.getVilles();
+            Ville ville = villeRepository.findByDepartementIdAndId(id, idVille).orElse(null);
+            if (ville != null) {
+                VersionConflictException.check(ville.getVersion(), version);
+                villeRepository.delete(ville);
+                eventPublisher.publishEvent(VilleChangedEvent.deleted(ville));
+                return new VilleDto(ville.getId(), ville.getNom(), ville.getNbHabitants());
             }
             return null;
+        } catch (VersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new ApiException("Impossible de supprimer la ville");
         }
@@ -180,41 +429,144 @@ public class DepartementService {
      * @param id      l'id du département
      * @param idVille l'id de la ville à mettre à jour
      * @param ville   la ville mise à jour
-     * @return List<Ville> la liste des villes
+     * @param version la version attendue de la ville (If-Match), null pour mettre à jour sans condition
+     * @return VilleDto la ville mise à jour, null si elle n'existe pas dans ce département
+     */
+    @Transactional
+    public VilleDto updateVille(Long id, Long idVille, Ville ville, Long version) throws ApiException {
+        return villeService.update(id, idVille, ville.getNom(), ville.getNbHabitants(), version, false);
+    }
+
+    /**
+     * Mettre à jour une partie d'une ville d'un département
+     *
+     * @param id      l'id du département
+     * @param idVille l'id de la ville à mettre à jour
+     * @param patch   les champs à modifier, les champs nuls sont gardés
+     * @param version la version attendue de la ville (If-Match), null pour mettre à jour sans condition
+     * @return VilleDto la ville mise à jour, null si elle n'existe pas dans ce département
+     */
+    @Transactional
+    public VilleDto patchVille(Long id, Long idVille, VillePatchDto patch, Long version) throws ApiException {
+        return villeService.update(id, idVille, patch.getNom(), patch.getNbHabitants(), version, true);
+    }
+
+    /**
+     * Incrémenter la version des départements dont les villes ont changé, dans la transaction de l'écriture
+     * L'ETag d'un département et celui de la liste de ses villes changent donc avec ses villes
+     */
+    @EventListener
+    @Transactional
+    public void onVilleChanged(VilleChangedEvent event) {
+        Set<Long> ids = new HashSet<>();
+        if (event.isBulk()) {
+            ids.addAll(event.getDepartementIds());
+        } else if (event.getVille().departementId() != null) {
+            ids.add(event.getVille().departementId());
+        }
+        Instant now = Instant.now();
+        for (Long id : ids) {
+            DepartementRepository.touch(id, now);
+        }
+    }
+
+    /**
+     * Exporter tous les départements au format CSV directement dans un flux de sortie
+     * Les départements sont lus par lots triés par id et chaque lot est envoyé avant la lecture du suivant ;
+     * chaque lot est lu dans sa propre transaction courte en lecture seule, comme pour l'export des villes
+     *
+     * @param outputStream le flux dans lequel écrire le CSV
      */
-    public List<Ville> updateVille(Long id, Long idVille, Ville ville) throws ApiException {
+    public void exportDepartementsToCSV(OutputStream outputStream) throws ApiException {
         try {
-            Departement departement = DepartementRepository.findById(id).orElse(null);
-            if (departement != null) {
-                departement.getVilles().stream().filter(v -> v.getId() == idVille).findFirst().ifPresent(v -> {
-                    v.setNom(ville.getNom());
-                    v.setNbHabitants(ville.getNbHabitants());
-                });
-                DepartementRepository.save(departement);
-                return departement.getVilles();
-            }
-            return null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write("id,nom\n");
+            long lastId = 0;
+            List<Departement> departements;
+            do {
+                departements = DepartementRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(exportBatchSize));
+                for (Departement d : departements) {
+                    writer.append(String.valueOf(d.getId())).append(",").append(Csv.field(d.getNom())).append("\n");
+                    lastId = d.getId();
+                }
+                writer.flush();
+            } while (departements.size() == exportBatchSize);
         } catch (Exception e) {
-            throw new ApiException("Impossible de mettre à jour la ville");
+            throw new ApiException("Impossible d'exporter les départements");
         }
     }
 
     /**
-     * Exporter tous les départements au format CSV
+     * Exporter les départements avec les noms de leurs villes en tableau JSON, directement dans un flux de sortie
+     * Même contenu que getDepartements(), lu par lots de départements triés par id (keyset) : pour chaque lot,
+     * une requête pour les départements et une pour les noms de leurs villes, chacune dans sa propre transaction courte.
+     * Le lot est écrit et envoyé au client avant la lecture du suivant : aucune connexion n'est gardée pendant l'écriture.
      *
-     * @return String le contenu du fichier CSV
+     * @param outputStream le flux dans lequel écrire le JSON
      */
-    public String exportDepartementsToCSV() throws ApiException {
-        try {
-            List<Departement> departements = DepartementRepository.findAll();
-            StringBuilder csv = new StringBuilder();
-            csv.append("id,nom\n");
-            departements.forEach(d -> csv.append(d.getId()).append(",").append(d.getNom()).append("\n"));
-            return csv.toString();
+    public void exportDepartementsToJson(OutputStream outputStream) throws ApiException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            long lastId = 0;
+            List<DepartementDto> departements;
+            do {
+                departements = DepartementRepository.findDtoByIdGreaterThanOrderById(lastId, Limit.of(exportBatchSize));
+                fillVilles(departements, DepartementDto.Villes.NOMS);
+                for (DepartementDto departement : departements) {
+                    DepartementDtoSerializer.write(departement, generator);
+                    lastId = departement.getId();
+                }
+                generator.flush();
+            } while (departements.size() == exportBatchSize);
+            generator.writeEndArray();
         } catch (Exception e) {
             throw new ApiException("Impossible d'exporter les départements");
         }
     }
 
+    /**
+     * Retrouver la ville qui sert de curseur de pagination
+     *
+     * @param id    l'id du département
+     * @param after l'id de la ville
+     * @return VilleDto la ville
+     */
+    private VilleDto getCursor(Long id, Long after) throws ApiException {
+        VilleDto cursor = getVille(id, after);
+        if (cursor == null) {
+            throw new BadRequestException("Curseur invalide : la ville " + after + " n'existe pas dans ce département");
+        }
+        return cursor;
+    }
+
+    /**
+     * Remplir les villes d'une liste de départements avec une seule requête
+     *
+     * @param departements les départements à compléter
+     * @param villes le contenu des villes à renseigner
+     */
+    private void fillVilles(List<DepartementDto> departements, DepartementDto.Villes villes) {
+        if (villes == DepartementDto.Villes.AUCUNE || departements.isEmpty()) {
+            return;
+        }
+        Map<Long, DepartementDto> byId = new HashMap<>();
+        for (DepartementDto d : departements) {
+            if (villes == DepartementDto.Villes.NOMS) {
+                d.setVilles(new ArrayList<>());
+            } else {
+                d.setVilleIds(new ArrayList<>());
+            }
+            byId.put(d.getId(), d);
+        }
+        for (VilleRef ville : villeRepository.findRefsByDepartementIdIn(byId.keySet())) {
+            DepartementDto d = byId.get(ville.getDepartementId());
+            if (villes == DepartementDto.Villes.NOMS) {
+                d.getVilles().add(ville.getNom());
+            } else {
+                d.getVilleIds().add(ville.getId());
+            }
+        }
+    }
+
 
 }
@@ -0,0 +1,131 @@
+package com.example.demo.service;
+
+import com.example.demo.ApiException;
+import com.example.demo.dto.PopulationStatsDto;
+import com.example.demo.entity.DepartementStats;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.repository.DepartementStatsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service des statistiques de population des départements
+ * Les statistiques sont gardées dans la table de synthèse departement_stats, mise à jour dans la transaction
+ * de chaque écriture sur les villes : ajouter ou retirer une ville ne modifie qu'une ligne, et les statistiques
+ * nationales se calculent à partir d'une ligne par département, sans lire les villes.
+ * La ligne d'un département est créée une seule fois, par la transaction qui crée le département :
+ * les mises à jour ne créent jamais de ligne, deux écritures concurrentes ne peuvent donc pas l'insérer en double.
+ */
+@Service
+public class DepartementStatsService {
+
+    /**
+     * Repository des statistiques
+     */
+    @Autowired
+    private DepartementStatsRepository departementStatsRepository;
+
+    /**
+     * Contexte de persistance, vidé en base avant chaque mise à jour des statistiques
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Récupérer les statistiques de la France entière, avec celles de chaque département
+     *
+     * @return PopulationStatsDto les statistiques
+     */
+    public PopulationStatsDto getStats() throws ApiException {
+        try {
+            return PopulationStatsDto.total(departementStatsRepository.findAllDto());
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les statistiques");
+        }
+    }
+
+    /**
+     * Récupérer les statistiques d'un département
+     *
+     * @param id l'id du département
+     * @return PopulationStatsDto les statistiques, null si le département n'existe pas
+     */
+    public PopulationStatsDto getStats(Long id) throws ApiException {
+        try {
+            return departementStatsRepository.findDtoById(id).orElse(null);
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les statistiques du département");
+        }
+    }
+
+    /**
+     * Créer les statistiques, vides, d'un nouveau département
+     * Appelé dans la transaction qui crée le département : aucune autre transaction ne connaît encore son id.
+     *
+     * @param id l'id du département
+     */
+    @Transactional
+    public void createStats(long id) {
+        entityManager.persist(new DepartementStats(id));
+    }
+
+    /**
+     * Supprimer les statistiques d'un département supprimé
+     *
+     * @param id l'id du département
+     */
+    @Transactional
+    public void deleteStats(long id) {
+        departementStatsRepository.deleteById(id);
+    }
+
+    /**
+     * Mettre à jour les statistiques après une écriture sur les villes, dans la même transaction
+     * Ajout, suppression et modification sont des UPDATE relatifs d'une seule ligne. Une modification qui ne change pas
+     * la population ne touche pas aux statistiques ; seule une écriture en masse fait tout recalculer.
+     */
+    @EventListener
+    @Transactional
+    public void onVilleChanged(VilleChangedEvent event) {
+        entityManager.flush();
+        if (event.isBulk()) {
+            event.getDepartementIds().forEach(departementStatsRepository::refresh);
+            return;
+        }
+        VilleChangedEvent.Etat ville = event.getVille();
+        if (ville.departementId() == null) {
+            return;
+        }
+        switch (event.getType()) {
+            case ADDED -> departementStatsRepository.addVille(ville.departementId(), ville.nbHabitants());
+            case DELETED -> departementStatsRepository.removeVille(ville.departementId(), ville.nbHabitants());
+            default -> {
+                VilleChangedEvent.Etat ancien = event.getAncien();
+                if (ancien == null || !ville.departementId().equals(ancien.departementId())) {
+                    departementStatsRepository.refresh(ville.departementId());
+                } else if (ancien.nbHabitants() != ville.nbHabitants()) {
+                    departementStatsRepository.updateVille(ville.departementId(), ancien.nbHabitants(), ville.nbHabitants());
+                }
+            }
+        }
+    }
+
+    /**
+     * Au démarrage, créer et calculer les statistiques des départements qui n'en ont pas
+     * Ce ne sont que des départements créés avant la table de synthèse, que la migration n'aurait pas remplie.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void createMissingStats() {
+        for (Long id : departementStatsRepository.findDepartementIdsWithoutStats()) {
+            entityManager.persist(new DepartementStats(id));
+            entityManager.flush();
+            departementStatsRepository.refresh(id);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.function.Supplier;
+
+/**
+ * Métriques d'un index de villes en mémoire, qui reprennent les statistiques de l'ancien cache de recherche
+ * - recensement.villes.index.reads : lectures servies par l'index déjà chargé (result=hit)
+ *   ou qui ont dû le recharger depuis la base (result=miss)
+ * - recensement.villes.index.invalidations : index chargé invalidé par une écriture en masse
+ * - recensement.villes.index.size : nombre de villes dans l'index
+ */
+final class IndexMetrics {
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter invalidations;
+
+    /**
+     * @param meterRegistry le registre des métriques
+     * @param index le nom de l'index, en tag de chaque métrique : population ou autocomplete
+     * @param size le nombre de villes de l'index
+     */
+    IndexMetrics(MeterRegistry meterRegistry, String index, Supplier<Number> size) {
+        hits = reads(meterRegistry, index, "hit");
+        misses = reads(meterRegistry, index, "miss");
+        invalidations = Counter.builder("recensement.villes.index.invalidations")
+                .description("Index de villes invalidés par une écriture en masse")
+                .tag("index", index)
+                .register(meterRegistry);
+        Gauge.builder("recensement.villes.index.size", size)
+                .description("Nombre de villes dans l'index")
+                .tag("index", index)
+                .register(meterRegistry);
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void invalidated() {
+        invalidations.increment();
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String index, String result) {
+        return Counter.builder("recensement.villes.index.reads")
+                .description("Lectures d'un index de villes, servies par l'index chargé ou après rechargement")
+                .tag("index", index)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
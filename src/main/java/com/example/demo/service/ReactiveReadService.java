@@ -0,0 +1,133 @@
+package com.example.demo.service;
+
+import com.example.demo.ApiException;
+import com.example.demo.BadRequestException;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.repository.DepartementReactiveRepository;
+import com.example.demo.repository.VilleReactiveRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Service de lecture non bloquante des villes et des départements
+ * Les lectures en base passent par R2DBC ; l'autocomplétion et les tranches de population sont lues
+ * dans les index en mémoire, comme pour l'API classique. Un index à recharger (au premier appel, ou après
+ * une écriture en masse) est relu par une requête JDBC bloquante : ces lectures sont donc faites sur
+ * Schedulers.boundedElastic(), jamais sur le thread de l'appelant.
+ * Rien n'est lu avant l'abonnement, et les erreurs sont émises comme des ApiException.
+ */
+@Service
+public class ReactiveReadService {
+
+    @Autowired
+    private VilleReactiveRepository villeReactiveRepository;
+
+    @Autowired
+    private DepartementReactiveRepository departementReactiveRepository;
+
+    /**
+     * Index des noms de villes pour l'autocomplétion
+     */
+    @Autowired
+    private VilleAutocompleteIndex autocompleteIndex;
+
+    /**
+     * Index des villes par population
+     */
+    @Autowired
+    private VillePopulationIndex populationIndex;
+
+    /**
+     * Récupérer les villes après un curseur, triées par id
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes, borné à CursorPage.MAX_LIMIT
+     * @return Flux<VilleDto>
+     */
+    public Flux<VilleDto> getVilles(long after, int limit) {
+        return villeReactiveRepository.findDtoByIdGreaterThan(after, bound(limit))
+                .onErrorMap(e -> new ApiException("Impossible de récupérer les villes", e));
+    }
+
+    /**
+     * Récupérer une ville par son id
+     * @param id l'id de la ville
+     * @return Mono<VilleDto> vide si la ville n'existe pas
+     */
+    public Mono<VilleDto> getVille(long id) {
+        return villeReactiveRepository.findDtoById(id)
+                .onErrorMap(e -> new ApiException("Impossible de récupérer la ville", e));
+    }
+
+    /**
+     * Autocompléter un nom de ville dans l'index en mémoire
+     * @param prefix le début des mots du nom
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto> les villes trouvées, les plus peuplées d'abord
+     */
+    public Flux<VilleDto> searchVilles(String prefix, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(autocompleteIndex.search(prefix, bound(limit))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> new ApiException("Impossible de récupérer les villes", e));
+    }
+
+    /**
+     * Récupérer les villes entre deux populations dans l'index en mémoire, par population croissante
+     * @param min la population minimale
+     * @param max la population maximale
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes
+     * @return Flux<VilleDto>
+     */
+    public Flux<VilleDto> getVillesBetween(int min, int max, long after, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(populationIndex.page(min, max, after, limit).getContent()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(e -> e instanceof IllegalArgumentException
+                        ? new BadRequestException(e.getMessage())
+                        : new ApiException("Impossible de récupérer les villes", e));
+    }
+
+    /**
+     * Récupérer les départements après un curseur, triés par id, sans leurs villes
+     * @param after l'id du dernier département reçu (0 pour la première page)
+     * @param limit le nombre de départements
+     * @return Flux<DepartementDto>
+     */
+    public Flux<DepartementDto> getDepartements(long after, int limit) {
+        return departementReactiveRepository.findDtoByIdGreaterThan(after, bound(limit))
+                .onErrorMap(e -> new ApiException("Impossible de récupérer les départements", e));
+    }
+
+    /**
+     * Récupérer un département par son id, sans ses villes
+     * @param id l'id du département
+     * @return Mono<DepartementDto> vide si le département n'existe pas
+     */
+    public Mono<DepartementDto> getDepartement(long id) {
+        return departementReactiveRepository.findDtoById(id)
+                .onErrorMap(e -> new ApiException("Impossible de récupérer le département", e));
+    }
+
+    /**
+     * Récupérer les villes d'un département après un curseur, triées par id
+     * @param id l'id du département
+     * @param after l'id de la dernière ville reçue (0 pour la première page)
+     * @param limit le nombre de villes
+     * @return Mono<Flux<VilleDto>> vide si le département n'existe pas
+     */
+    public Mono<Flux<VilleDto>> getVillesOfDepartement(long id, long after, int limit) {
+        return departementReactiveRepository.existsById(id)
+                .onErrorMap(e -> new ApiException("Impossible de récupérer le département", e))
+                .filter(Boolean::booleanValue)
+                .map(exists -> villeReactiveRepository.findDtoByDepartementId(id, after, bound(limit))
+                        .onErrorMap(e -> new ApiException("Impossible de récupérer les villes", e)));
+    }
+
+    private static int bound(int limit) {
+        return Math.max(1, Math.min(limit, CursorPage.MAX_LIMIT));
+    }
+}
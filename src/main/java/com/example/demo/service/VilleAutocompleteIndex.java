@@ -0,0 +1,210 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.VilleDto;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.repository.VilleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index en mémoire des noms de villes pour l'autocomplétion
+ * Chaque nom est découpé en mots normalisés (sans accents ni majuscules : "Saint-Étienne" donne "saint" et "etienne"),
+ * rangés dans une map triée : les mots qui commencent par un préfixe forment une plage de la map.
+ * Une recherche ne touche pas la base : elle lit la plage du terme le plus long, garde les villes dont les mots
+ * commencent par tous les termes, et renvoie les plus peuplées.
+ *
+ * L'index est tenu à jour ville par ville par les VilleChangedEvent. Après une écriture en masse,
+ * il est rechargé depuis la base à la recherche suivante. Les recherches servies par l'index chargé
+ * ou après un rechargement sont comptées dans IndexMetrics.
+ */
+@Component
+public class VilleAutocompleteIndex {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATEURS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Les villes les plus peuplées d'abord, puis par id
+     */
+    private static final Comparator<Entree> RANG = Comparator.comparingInt(Entree::nbHabitants).reversed().thenComparingLong(Entree::id);
+
+    /**
+     * Une ville de l'index
+     */
+    record Entree(long id, String nom, int nbHabitants, String[] mots) {
+
+        boolean matches(String[] termes) {
+            for (String terme : termes) {
+                boolean found = false;
+                for (String mot : mots) {
+                    if (mot.startsWith(terme)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Le contenu de l'index : les villes par id et les ids des villes par mot
+     */
+    private record Index(Map<Long, Entree> villes, NavigableMap<String, Set<Long>> mots) {
+
+        Index() {
+            this(new ConcurrentHashMap<>(), new ConcurrentSkipListMap<>());
+        }
+
+        void add(Entree entree) {
+            remove(entree.id());
+            villes.put(entree.id(), entree);
+            for (String mot : entree.mots()) {
+                mots.computeIfAbsent(mot, m -> ConcurrentHashMap.newKeySet()).add(entree.id());
+            }
+        }
+
+        void remove(long id) {
+            Entree entree = villes.remove(id);
+            if (entree != null) {
+                for (String mot : entree.mots()) {
+                    mots.computeIfPresent(mot, (m, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+                }
+            }
+        }
+    }
+
+    @Autowired
+    private VilleRepository villeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private IndexMetrics metrics;
+
+    private volatile Index index = new Index();
+
+    /**
+     * Vrai si l'index doit être rechargé depuis la base avant la prochaine recherche
+     */
+    private volatile boolean stale = true;
+
+    @PostConstruct
+    void registerMetrics() {
+        metrics = new IndexMetrics(meterRegistry, "autocomplete", () -> index.villes().size());
+    }
+
+    /**
+     * Rechercher les villes dont les mots commencent par ceux de la saisie
+     *
+     * @param saisie le texte saisi, par exemple "saint eti"
+     * @param limit le nombre maximal de villes à renvoyer
+     * @return List<VilleDto> les villes correspondantes, les plus peuplées d'abord
+     */
+    public List<VilleDto> search(String saisie, int limit) {
+        String[] termes = words(saisie);
+        if (termes.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        Index current = load();
+        String pivot = Arrays.stream(termes).max(Comparator.comparingInt(String::length)).get();
+        PriorityQueue<Entree> top = new PriorityQueue<>(limit + 1, RANG.reversed());
+        Set<Long> seen = new HashSet<>();
+        for (Set<Long> ids : current.mots().subMap(pivot, true, pivot + Character.MAX_VALUE, false).values()) {
+            for (Long id : ids) {
+                Entree entree = current.villes().get(id);
+                if (entree == null || !seen.add(id) || !entree.matches(termes)) {
+                    continue;
+                }
+                if (top.size() < limit) {
+                    top.add(entree);
+                } else if (RANG.compare(entree, top.peek()) < 0) {
+                    top.poll();
+                    top.add(entree);
+                }
+            }
+        }
+        List<Entree> result = new ArrayList<>(top);
+        result.sort(RANG);
+        return result.stream().map(e -> new VilleDto(e.id(), e.nom(), e.nbHabitants())).toList();
+    }
+
+    /**
+     * Mettre l'index à jour après une écriture validée
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onVilleChanged(VilleChangedEvent event) {
+        if (event.isBulk()) {
+            if (!stale) {
+                metrics.invalidated();
+            }
+            stale = true;
+        } else if (event.getType() == VilleChangedEvent.Type.DELETED) {
+            index.remove(event.getVille().id());
+        } else {
+            VilleChangedEvent.Etat ville = event.getVille();
+            index.add(entree(ville.id(), ville.nom(), ville.nbHabitants()));
+        }
+    }
+
+    /**
+     * Renvoyer l'index, rechargé depuis la base s'il le faut
+     */
+    private Index load() {
+        if (!stale) {
+            metrics.hit();
+            return index;
+        }
+        synchronized (this) {
+            if (!stale) {
+                metrics.hit();
+            } else {
+                metrics.miss();
+                Index loaded = new Index();
+                for (VilleDto ville : villeRepository.findAllDto()) {
+                    loaded.add(entree(ville.getId(), ville.getNom(), ville.getNbHabitants()));
+                }
+                index = loaded;
+                stale = false;
+            }
+            return index;
+        }
+    }
+
+    private static Entree entree(long id, String nom, int nbHabitants) {
+        return new Entree(id, nom, nbHabitants, Arrays.stream(words(nom)).distinct().toArray(String[]::new));
+    }
+
+    /**
+     * Découper un texte en mots sans accents ni majuscules
+     */
+    static String[] words(String texte) {
+        if (texte == null) {
+            return new String[0];
+        }
+        String normalized = ACCENTS.matcher(Normalizer.normalize(texte, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATEURS.split(normalized)).filter(mot -> !mot.isEmpty()).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.demo.service;
+
+import com.example.demo.ApiException;
+import com.example.demo.BadRequestException;
+import com.example.demo.dto.ImportResultDto;
+import com.example.demo.entity.Ville;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.repository.DepartementRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Service d'import en masse des villes
+ * Le fichier est lu ligne par ligne (enregistrement par enregistrement en CSV, selon la RFC 4180),
+ * chaque ligne est validée avec les contraintes de l'entité Ville puis insérée par lots JDBC.
+ * Chaque lot est validé dans sa propre transaction : la mémoire utilisée ne dépend que de la taille d'un lot.
+ * Les inserts passent par JDBC et non par Hibernate, qui ne sait pas regrouper les inserts d'une clé IDENTITY.
+ */
+@Service
+public class VilleImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(VilleImportService.class);
+
+    /**
+     * Format du fichier importé
+     */
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final String INSERT = "insert into ville (nom, nb_habitants, departement_id, version, modified_at) values (?, ?, ?, 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DepartementRepository departementRepository;
+
+    @Autowired
+    private Validator validator;
+
+    /**
+     * Publie un VilleChangedEvent après chaque lot, pour tenir à jour les index en mémoire et les statistiques des départements
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Lecteur JSON des lignes NDJSON, qui ignore les champs inconnus
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * Nombre de villes insérées par lot (et par transaction)
+     */
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Une ligne du fichier importé
+     */
+    record Ligne(String nom, Integer nbHabitants, Long departementId) {
+    }
+
+    /**
+     * Importer des villes depuis un flux CSV ou NDJSON
+     * En CSV, la première ligne donne les colonnes : nom, nbHabitants et departementId (inutile si le département est imposé).
+     * En NDJSON, chaque ligne est un objet {"nom": ..., "nbHabitants": ..., "departementId": ...}.
+     * Un fichier CSV vide ou sans ces colonnes donne une réponse 400 ; une ligne invalide est seulement rejetée.
+     *
+     * @param inputStream le contenu du fichier
+     * @param format le format du fichier
+     * @param departementId le département de toutes les villes, ou null s'il est donné par chaque ligne
+     * @return ImportResultDto le nombre de villes acceptées et rejetées
+     */
+    public ImportResultDto importVilles(InputStream inputStream, Format format, Long departementId) throws ApiException {
+        try {
+            Set<Long> departementIds = departementId != null ? Set.of(departementId) : new HashSet<>(departementRepository.findAllIds());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            ImportResultDto result = new ImportResultDto();
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            List<Long> batchLines = new ArrayList<>(batchSize);
+            if (format == Format.CSV) {
+                Csv.RecordReader records = new Csv.RecordReader(reader);
+                List<String> columns = parseHeader(records, departementId == null);
+                while (true) {
+                    try {
+                        List<String> record = records.next();
+                        if (record == null) {
+                            break;
+                        }
+                        if (record.size() == 1 && record.get(0).isBlank()) {
+                            continue;
+                        }
+                        batch.add(validate(parseCsv(columns, record), departementId, departementIds));
+                        batchLines.add(records.line());
+                    } catch (IllegalArgumentException e) {
+                        result.reject(records.line(), e.getMessage());
+                        continue;
+                    }
+                    if (batch.size() == batchSize) {
+                        insert(batch, batchLines, result);
+                    }
+                }
+            } else {
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        batch.add(validate(objectMapper.readValue(line, Ligne.class), departementId, departementIds));
+                        batchLines.add(lineNumber);
+                    } catch (JsonProcessingException e) {
+                        result.reject(lineNumber, "JSON invalide");
+                        continue;
+                    } catch (IllegalArgumentException e) {
+                        result.reject(lineNumber, e.getMessage());
+                        continue;
+                    }
+                    if (batch.size() == batchSize) {
+                        insert(batch, batchLines, result);
+                    }
+                }
+            }
+            insert(batch, batchLines, result);
+            return result;
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ApiException("Impossible d'importer les villes", e);
+        }
+    }
+
+    /**
+     * Insérer un lot de villes dans une transaction, puis vider le lot
+     * Si le lot échoue, toutes ses lignes sont comptées comme rejetées. Un lot validé reste accepté même si la mise à jour
+     * des index et des statistiques qui suit échoue : ses lignes sont en base, le client ne doit pas les renvoyer.
+     */
+    private void insert(List<Object[]> batch, List<Long> batchLines, ImportResultDto result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean inserted = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, batch));
+            inserted = true;
+        } catch (Exception e) {
+            for (Long line : batchLines) {
+                result.reject(line, "lot refusé par la base (" + e.getClass().getSimpleName() + ")");
+            }
+        }
+        if (inserted) {
+            result.accept(batch.size());
+            Set<Long> departementIds = new HashSet<>();
+            for (Object[] row : batch) {
+                departementIds.add((Long) row[2]);
+            }
+            try {
+                eventPublisher.publishEvent(VilleChangedEvent.bulk(departementIds));
+            } catch (RuntimeException e) {
+                log.warn("Villes importées, mais index ou statistiques des départements {} non mis à jour : {}", departementIds, e.getMessage());
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    /**
+     * Lire la ligne d'en-tête d'un CSV
+     * Sans en-tête ou sans les colonnes attendues, aucune ligne ne peut être lue : tout le fichier est refusé.
+     *
+     * @param records le lecteur du fichier
+     * @param departementColumn vrai si la colonne departementId est obligatoire
+     * @return List<String> les noms des colonnes, en minuscules
+     */
+    private List<String> parseHeader(Csv.RecordReader records, boolean departementColumn) throws IOException, BadRequestException {
+        List<String> header;
+        try {
+            header = records.next();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("En-tête CSV invalide : " + e.getMessage());
+        }
+        if (header == null || (header.size() == 1 && header.get(0).isBlank())) {
+            throw new BadRequestException("Le fichier CSV est vide");
+        }
+        List<String> columns = header.stream().map(column -> column.trim().toLowerCase(Locale.ROOT)).toList();
+        List<String> required = departementColumn ? List.of("nom", "nbhabitants", "departementid") : List.of("nom", "nbhabitants");
+        for (String column : required) {
+            if (!columns.contains(column)) {
+                throw new BadRequestException("En-tête CSV invalide : colonne " + column + " absente");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Lire un enregistrement CSV d'après les colonnes de l'en-tête
+     */
+    private Ligne parseCsv(List<String> columns, List<String> values) {
+        if (values.size() != columns.size()) {
+            throw new IllegalArgumentException(columns.size() + " colonnes attendues, " + values.size() + " trouvées");
+        }
+        String nom = null;
+        Integer nbHabitants = null;
+        Long departementId = null;
+        for (int i = 0; i < columns.size(); i++) {
+            String value = values.get(i).trim();
+            switch (columns.get(i)) {
+                case "nom" -> nom = value;
+                case "nbhabitants" -> nbHabitants = value.isEmpty() ? null : parseHabitants(value);
+                case "departementid" -> departementId = value.isEmpty() ? null : parseNumber(value);
+                default -> {
+                }
+            }
+        }
+        return new Ligne(nom, nbHabitants, departementId);
+    }
+
+    /**
+     * Lire un nombre entier d'une colonne CSV
+     */
+    private long parseNumber(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nombre invalide : " + value);
+        }
+    }
+
+    /**
+     * Lire un nombre d'habitants d'une colonne CSV
+     */
+    private int parseHabitants(String value) {
+        long nbHabitants = parseNumber(value);
+        if (nbHabitants > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Nombre d'habitants trop grand : " + value);
+        }
+        return (int) nbHabitants;
+    }
+
+    /**
+     * Valider une ligne avec les contraintes de l'entité Ville, par le Validator
+     * Le département, qui n'est qu'un id ici, est vérifié dans la liste des départements existants.
+     *
+     * @return Object[] les paramètres de l'insert
+     */
+    private Object[] validate(Ligne ligne, Long departementId, Set<Long> departementIds) {
+        Set<ConstraintViolation<Ville>> violations = new HashSet<>(validator.validateValue(Ville.class, "nom", ligne.nom()));
+        violations.addAll(validator.validateValue(Ville.class, "nbHabitants", ligne.nbHabitants()));
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining(", ")));
+        }
+        Long departement = departementId != null ? departementId : ligne.departementId();
+        if (departement == null) {
+            throw new IllegalArgumentException("Le département de la ville ne peut pas être nul");
+        }
+        if (!departementIds.contains(departement)) {
+            throw new IllegalArgumentException("Le département " + departement + " n'existe pas");
+        }
+        return new Object[]{ligne.nom(), ligne.nbHabitants(), departement, Timestamp.from(Instant.now())};
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.repository.VilleRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index en mémoire des villes triées par population
+ * Les villes sont rangées dans des tableaux parallèles triés par (nbHabitants, id), avec les sommes cumulées
+ * des populations : les bornes d'une plage se trouvent par recherche dichotomique, et le nombre de villes
+ * ou la population totale d'une plage se calculent en O(log n), sans objet ni boxing.
+ * Des tableaux triés par id permettent de retrouver la population de la ville qui sert de curseur.
+ *
+ * Les tableaux ne sont jamais modifiés : chaque écriture en construit une copie, publiée d'un seul coup.
+ * La copie insère ou retire la ville à sa place par System.arraycopy, sans retrier l'index.
+ * Les lectures se font donc sans verrou. L'index est tenu à jour par les VilleChangedEvent
+ * et rechargé depuis la base à la lecture suivante après une écriture en masse.
+ * Avec VilleAutocompleteIndex, il sert toutes les recherches de villes : elles ne passent plus par un cache
+ * de résultats, puisque les deux index sont à jour dès le commit de chaque écriture.
+ * Les lectures servies par l'index chargé ou après un rechargement sont comptées comme l'étaient les hits
+ * et les misses du cache (IndexMetrics).
+ */
+@Component
+public class VillePopulationIndex {
+
+    /**
+     * Un état de l'index
+     */
+    static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new int[0], new long[0], new String[0]);
+
+        /**
+         * Triés par (nbHabitants, id)
+         */
+        final int[] nbHabitants;
+        final long[] ids;
+        final String[] noms;
+
+        /**
+         * cumul[i] est la population totale des i premières villes
+         */
+        final long[] cumul;
+
+        /**
+         * Triés par id : les ids des villes et leur population
+         */
+        final long[] idsParId;
+        final int[] nbHabitantsParId;
+
+        Snapshot(int[] nbHabitants, long[] ids, String[] noms) {
+            this.nbHabitants = nbHabitants;
+            this.ids = ids;
+            this.noms = noms;
+            int n = ids.length;
+            this.cumul = new long[n + 1];
+            for (int i = 0; i < n; i++) {
+                cumul[i + 1] = cumul[i] + nbHabitants[i];
+            }
+            this.idsParId = ids.clone();
+            Arrays.sort(idsParId);
+            this.nbHabitantsParId = new int[n];
+            for (int i = 0; i < n; i++) {
+                nbHabitantsParId[Arrays.binarySearch(idsParId, ids[i])] = nbHabitants[i];
+            }
+        }
+
+        private Snapshot(int[] nbHabitants, long[] ids, String[] noms, long[] cumul, long[] idsParId, int[] nbHabitantsParId) {
+            this.nbHabitants = nbHabitants;
+            this.ids = ids;
+            this.noms = noms;
+            this.cumul = cumul;
+            this.idsParId = idsParId;
+            this.nbHabitantsParId = nbHabitantsParId;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * Position de la première ville qui vient après (nbHabitants, id)
+         */
+        int after(int nb, long id) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (nbHabitants[mid] < nb || (nbHabitants[mid] == nb && ids[mid] <= id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Position de la première ville d'au moins nb habitants
+         */
+        int from(int nb) {
+            return nb == Integer.MIN_VALUE ? 0 : after(nb - 1, Long.MAX_VALUE);
+        }
+
+        /**
+         * Position qui suit la dernière ville d'au plus nb habitants
+         */
+        int to(int nb) {
+            return after(nb, Long.MAX_VALUE);
+        }
+
+        /**
+         * Copie de l'index sans la ville id
+         * Les tableaux sont recopiés sans la case de la ville, et les sommes cumulées ne sont recalculées qu'à partir d'elle :
+         * O(n) copies de mémoire, sans tri.
+         */
+        Snapshot without(long id) {
+            int p = Arrays.binarySearch(idsParId, id);
+            if (p < 0) {
+                return this;
+            }
+            int i = after(nbHabitantsParId[p], id) - 1;
+            int n = size() - 1;
+            int[] newNb = new int[n];
+            long[] newIds = new long[n];
+            String[] newNoms = new String[n];
+            copyWithout(nbHabitants, newNb, i, n);
+            copyWithout(ids, newIds, i, n);
+            copyWithout(noms, newNoms, i, n);
+            long[] newCumul = cumul(newNb, i);
+            long[] newIdsParId = new long[n];
+            int[] newNbParId = new int[n];
+            copyWithout(idsParId, newIdsParId, p, n);
+            copyWithout(nbHabitantsParId, newNbParId, p, n);
+            return new Snapshot(newNb, newIds, newNoms, newCumul, newIdsParId, newNbParId);
+        }
+
+        /**
+         * Copie de l'index avec une ville de plus, qui ne doit pas déjà y être
+         * La ville est insérée à sa place dans les tableaux recopiés, comme pour without
+         */
+        Snapshot with(long id, String nom, int nb) {
+            int i = after(nb, id);
+            int p = -Arrays.binarySearch(idsParId, id) - 1;
+            int n = size() + 1;
+            int[] newNb = new int[n];
+            long[] newIds = new long[n];
+            String[] newNoms = new String[n];
+            copyWith(nbHabitants, newNb, i, size());
+            copyWith(ids, newIds, i, size());
+            copyWith(noms, newNoms, i, size());
+            newNb[i] = nb;
+            newIds[i] = id;
+            newNoms[i] = nom;
+            long[] newCumul = cumul(newNb, i);
+            long[] newIdsParId = new long[n];
+            int[] newNbParId = new int[n];
+            copyWith(idsParId, newIdsParId, p, size());
+            copyWith(nbHabitantsParId, newNbParId, p, size());
+            newIdsParId[p] = id;
+            newNbParId[p] = nb;
+            return new Snapshot(newNb, newIds, newNoms, newCumul, newIdsParId, newNbParId);
+        }
+
+        /**
+         * Sommes cumulées des populations nb, reprises de cet index jusqu'à la case i et recalculées ensuite
+         */
+        private long[] cumul(int[] nb, int i) {
+            long[] result = new long[nb.length + 1];
+            System.arraycopy(cumul, 0, result, 0, i + 1);
+            for (int k = i; k < nb.length; k++) {
+                result[k + 1] = result[k] + nb[k];
+            }
+            return result;
+        }
+
+        /**
+         * Copier un tableau sans sa case i (target a length cases)
+         */
+        private static void copyWithout(Object source, Object target, int i, int length) {
+            System.arraycopy(source, 0, target, 0, i);
+            System.arraycopy(source, i + 1, target, i, length - i);
+        }
+
+        /**
+         * Copier un tableau de length cases en laissant la case i libre
+         */
+        private static void copyWith(Object source, Object target, int i, int length) {
+            System.arraycopy(source, 0, target, 0, i);
+            System.arraycopy(source, i, target, i + 1, length - i);
+        }
+    }
+
+    @Autowired
+    private VilleRepository villeRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private IndexMetrics metrics;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Vrai si l'index doit être rechargé depuis la base avant la prochaine lecture
+     */
+    private volatile boolean stale = true;
+
+    @PostConstruct
+    void registerMetrics() {
+        metrics = new IndexMetrics(meterRegistry, "population", () -> snapshot.size());
+    }
+
+    /**
+     * Nombre de villes qui ont entre min et max habitants (bornes incluses)
+     */
+    public long count(int min, int max) {
+        Snapshot s = load();
+        return Math.max(0, s.to(max) - s.from(min));
+    }
+
+    /**
+     * Population totale des villes qui ont entre min et max habitants (bornes incluses)
+     */
+    public long sum(int min, int max) {
+        Snapshot s = load();
+        int from = s.from(min);
+        int to = s.to(max);
+        return from < to ? s.cumul[to] - s.cumul[from] : 0;
+    }
+
+    /**
+     * Page des villes qui ont entre min et max habitants, triées par population puis par id
+     *
+     * @param min la population minimale (incluse)
+     * @param max la population maximale (incluse)
+     * @param after l'id de la dernière ville de la page précédente (0 pour la première page)
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
+     */
+    public Slice<VilleDto> page(int min, int max, long after, int limit) {
+        Snapshot s = load();
+        int from = s.from(min);
+        if (after > 0) {
+            int p = Arrays.binarySearch(s.idsParId, after);
+            if (p < 0) {
+                throw new IllegalArgumentException("Curseur invalide : la ville " + after + " n'existe pas");
+            }
+            from = Math.max(from, s.after(s.nbHabitantsParId[p], after));
+        }
+        int to = s.to(max);
+        int size = Math.max(1, Math.min(limit, CursorPage.MAX_LIMIT));
+        int end = Math.min(to, from + size);
+        List<VilleDto> villes = new ArrayList<>(Math.max(0, end - from));
+        for (int i = from; i < end; i++) {
+            villes.add(new VilleDto(s.ids[i], s.noms[i], s.nbHabitants[i]));
+        }
+        return new SliceImpl<>(villes, CursorPage.request(limit), end < to);
+    }
+
+    /**
+     * Mettre l'index à jour après une écriture validée
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onVilleChanged(VilleChangedEvent event) {
+        if (event.isBulk()) {
+            if (!stale) {
+                metrics.invalidated();
+            }
+            stale = true;
+            return;
+        }
+        VilleChangedEvent.Etat ville = event.getVille();
+        Snapshot s = snapshot.without(ville.id());
+        if (event.getType() != VilleChangedEvent.Type.DELETED) {
+            s = s.with(ville.id(), ville.nom(), ville.nbHabitants());
+        }
+        snapshot = s;
+    }
+
+    /**
+     * Renvoyer l'index, rechargé depuis la base s'il le faut
+     */
+    private Snapshot load() {
+        if (!stale) {
+            metrics.hit();
+            return snapshot;
+        }
+        synchronized (this) {
+            if (!stale) {
+                metrics.hit();
+            } else {
+                metrics.miss();
+                snapshot = build(villeRepository.findAllDto());
+                stale = false;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Construire l'index à partir des villes triées par id
+     * Chaque ville est codée sur un long (population sur les 32 bits de poids fort, rang sur les autres) :
+     * un tri de long range les villes par population puis par id.
+     */
+    static Snapshot build(List<VilleDto> villes) {
+        int n = villes.size();
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((long) villes.get(i).getNbHabitants() << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] nbHabitants = new int[n];
+        long[] ids = new long[n];
+        String[] noms = new String[n];
+        for (int i = 0; i < n; i++) {
+            VilleDto ville = villes.get((int) keys[i]);
+            nbHabitants[i] = ville.getNbHabitants();
+            ids[i] = ville.getId();
+            noms[i] = ville.getNom();
+        }
+        return new Snapshot(nbHabitants, ids, noms);
+    }
+}
@@ -1,16 +1,46 @@
 package com.example.demo.service;
 
 import com.example.demo.ApiException;
+import com.example.demo.BadRequestException;
+import com.example.demo.VersionConflictException;
+import com.example.demo.dto.VersionDto;
+import com.example.demo.dto.VillePatchDto;
 import com.example.demo.entity.Ville;
+import com.example.demo.event.VilleChangedEvent;
 import com.example.demo.repository.VilleRepository;
-import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import com.example.demo.dto.CursorPage;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.dto.VilleDtoSerializer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
-import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
+/**
+ * Service de gestion des villes
+ * Chaque méthode publique est chronométrée (timer recensement.service, étiquettes class et method)
+ */
 @Service
+@Timed(value = "recensement.service", description = "Durée des appels aux services")
 public class VilleService {
 
     /**
@@ -21,16 +51,83 @@ public class VilleService {
     @Autowired
     private VilleRepository villeRepository;
 
+    /**
+     * Index des villes par population
+     */
+    @Autowired
+    private VillePopulationIndex populationIndex;
+
+    /**
+     * Index des noms de villes pour l'autocomplétion
+     */
+    @Autowired
+    private VilleAutocompleteIndex autocompleteIndex;
+
+    /**
+     * Valide les champs d'une mise à jour, faite sans charger l'entité
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * Publie un VilleChangedEvent à chaque écriture, pour tenir à jour les index en mémoire et les statistiques des départements
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Nombre de villes lues par requête lors de l'export CSV
+     */
+    @Value("${app.export.batch-size:1000}")
+    private int exportBatchSize;
+
+    /**
+     * Fournit le JsonGenerator de l'export JSON, avec la configuration Jackson de l'application
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
 
     /**
      * Récupérer la liste des villes
      *
-     * @return List<Ville> la liste des villes
+     * @return List<VilleDto> la liste des villes
      */
-    @Transactional
-    public List<Ville> getVilles() throws ApiException {
+    @Transactional(readOnly = true)
+    public List<VilleDto> getVilles() throws ApiException {
         try {
-            return villeRepository.findAll();
+            return villeRepository.findAllDto();
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les villes");
+        }
+    }
+
+    /**
+     * Récupérer une page de villes après un curseur, triées par id
+     *
+     * @param after l'id de la dernière ville de la page précédente (0 pour la première page)
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
+     */
+    @Transactional(readOnly = true)
+    public Slice<VilleDto> getVilles(long after, int limit) throws ApiException {
+        try {
+            return villeRepository.findDtoByIdGreaterThan(after, CursorPage.request(limit));
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer les villes");
+        }
+    }
+
+    /**
+     * Récupérer une page de villes par numéro de page
+     *
+     * @param pageable le numéro, la taille et le tri de la page
+     * @return Page<VilleDto> la page de villes
+     */
+    @Transactional(readOnly = true)
+    public Page<VilleDto> getVilles(Pageable pageable) throws ApiException {
+        try {
+            return villeRepository.findAllDto(pageable);
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les villes");
         }
@@ -39,12 +136,26 @@ public class VilleService {
     /**
      * Récupérer une ville par son id
      * @param id l'id de la ville
-     * @return Ville la ville
+     * @return VilleDto la ville
      */
-    @Transactional
-    public Ville getVilleById(Integer id) throws ApiException {
+    @Transactional(readOnly = true)
+    public VilleDto getVilleById(Integer id) throws ApiException {
         try {
-            return villeRepository.findById(id).orElse(null);
+            return villeRepository.findDtoById(id).orElse(null);
+        } catch (Exception e) {
+            throw new ApiException("Impossible de récupérer la ville");
+        }
+    }
+
+    /**
+     * Récupérer la version d'une ville, sans la lire
+     * @param id l'id de la ville
+     * @return VersionDto la version de la ville, null si elle n'existe pas
+     */
+    @Transactional(readOnly = true)
+    public VersionDto getVersion(long id) throws ApiException {
+        try {
+            return villeRepository.findVersionById(id).orElse(null);
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer la ville");
         }
@@ -53,12 +164,14 @@ public class VilleService {
     /**
      * Ajouter une ville
      * @param ville la ville à ajouter
-     * @return Ville la ville ajoutée
+     * @return VilleDto la ville ajoutée
      */
     @Transactional
-    public Ville addVille(Ville ville) throws ApiException {
+    public VilleDto addVille(Ville ville) throws ApiException {
         try {
-            return villeRepository.save(ville);
+            Ville saved = villeRepository.save(ville);
+            eventPublisher.publishEvent(VilleChangedEvent.added(saved));
+            return new VilleDto(saved.getId(), saved.getNom(), saved.getNbHabitants());
         } catch (Exception e) {
             throw new ApiException("Impossible d'ajouter la ville");
         }
@@ -66,11 +179,22 @@ public class VilleService {
     /**
      * Supprimer une ville
      * @param id l'id de la ville à supprimer
+     * @param version la version attendue de la ville (If-Match), null pour supprimer sans condition
+     * @return VilleDto la ville supprimée, null si elle n'existait pas
      */
     @Transactional
-    public void deleteVille(Integer id) throws ApiException {
+    public VilleDto deleteVille(Integer id, Long version) throws ApiException {
         try {
-            villeRepository.deleteById(id);
+            Ville ville = villeRepository.findById(id).orElse(null);
+            if (ville != null) {
+                VersionConflictException.check(ville.getVersion(), version);
+                villeRepository.delete(ville);
+                eventPublisher.publishEvent(VilleChangedEvent.deleted(ville));
+                return new VilleDto(ville.getId(), ville.getNom(), ville.getNbHabitants());
+            }
+            return null;
+        } catch (VersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new ApiException("Impossible de supprimer la ville");
         }
@@ -82,77 +206,218 @@ public class VilleService {
      *
      * @param id           l'id de la ville à mettre à jour
      * @param ville la ville à mettre à jour
+     * @param version la version attendue de la ville (If-Match), null pour mettre à jour sans condition
+     * @return VilleDto la ville mise à jour, null si elle n'existe pas
      */
     @Transactional
-    public void updateVille(Integer id, Ville ville) throws ApiException {
+    public VilleDto updateVille(Integer id, Ville ville, Long version) throws ApiException {
+        return update(null, id, ville.getNom(), ville.getNbHabitants(), version, false);
+    }
+
+    /**
+     * Mettre à jour une partie d'une ville
+     *
+     * @param id l'id de la ville à mettre à jour
+     * @param patch les champs à modifier, les champs nuls sont gardés
+     * @param version la version attendue de la ville (If-Match), null pour mettre à jour sans condition
+     * @return VilleDto la ville mise à jour, null si elle n'existe pas
+     */
+    @Transactional
+    public VilleDto patchVille(Integer id, VillePatchDto patch, Long version) throws ApiException {
+        return update(null, id, patch.getNom(), patch.getNbHabitants(), version, true);
+    }
+
+    /**
+     * Mettre à jour une ville, sans la charger
+     * L'état de la ville est d'abord lu en verrouillant sa ligne (le verrou que l'UPDATE prendrait de toute façon),
+     * puis la ville est modifiée par une requête UPDATE. L'état d'avant est publié avec l'événement : les statistiques
+     * du département sont mises à jour de la différence de population, sans recalcul.
+     * Une écriture coûte donc, dans la même transaction : la lecture verrouillée, l'UPDATE de la ville,
+     * l'UPDATE de la version du département (DepartementService.onVilleChanged) et, si la population change,
+     * l'UPDATE relatif de ses statistiques, qui ne relit l'index (departement_id, nb_habitants) que si la ville détenait
+     * la plus petite ou la plus grande population. Soit 3 ou 4 requêtes d'une ligne chacune.
+     * Si l'UPDATE ne modifie aucune ligne, la ville existe (elle est verrouillée) : seule la version attendue diffère (412).
+     *
+     * @param departementId le département attendu de la ville, null pour ne pas le vérifier
+     * @param id l'id de la ville
+     * @param nom le nouveau nom, null pour le garder (mise à jour partielle seulement)
+     * @param nbHabitants le nouveau nombre d'habitants, null pour le garder (mise à jour partielle seulement)
+     * @param version la version attendue de la ville (If-Match), null pour mettre à jour sans condition
+     * @param partial vrai pour une mise à jour partielle (PATCH)
+     * @return VilleDto la ville mise à jour, null si elle n'existe pas (dans ce département)
+     */
+    @Transactional
+    public VilleDto update(Long departementId, long id, String nom, Integer nbHabitants, Long version, boolean partial) throws ApiException {
+        validate("nom", nom, partial);
+        validate("nbHabitants", nbHabitants, partial);
         try {
-            Ville villeToUpdate = villeRepository.findById(id).orElse(null);
-            if (villeToUpdate != null) {
-                villeToUpdate.setNom(ville.getNom());
-                villeToUpdate.setNbHabitants(ville.getNbHabitants());
-                villeRepository.save(villeToUpdate);
+            VilleChangedEvent.Etat ancien = villeRepository.findEtatForUpdateById(id).orElse(null);
+            if (ancien == null || (departementId != null && !departementId.equals(ancien.departementId()))) {
+                return null;
             }
+            if (villeRepository.update(id, departementId, nom, nbHabitants, version, Instant.now()) == 0) {
+                throw new VersionConflictException("La ressource a été modifiée : version " + version + " attendue");
+            }
+            VilleChangedEvent.Etat ville = new VilleChangedEvent.Etat(id, nom != null ? nom : ancien.nom(),
+                    nbHabitants != null ? nbHabitants : ancien.nbHabitants(), ancien.departementId());
+            eventPublisher.publishEvent(VilleChangedEvent.updated(ancien, ville));
+            return new VilleDto(ville.id(), ville.nom(), ville.nbHabitants());
+        } catch (VersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             throw new ApiException("Impossible de mettre à jour la ville");
         }
     }
 
     /**
-     * Récupérer les villes dont le nom commence par un préfixe
-     * @param prefix le préfixe
-     * @return List<Ville> la liste des villes
+     * Valider un champ de la ville avec les contraintes de l'entité, l'UPDATE ne passant pas par la validation d'Hibernate
+     * Un champ nul n'est accepté que pour une mise à jour partielle. Un champ invalide donne une réponse 400.
      */
-    @Transactional
-    public List<Ville> getVillesByNameStartingWith(@RequestParam String prefix) throws ApiException {
+    private void validate(String property, Object value, boolean partial) throws ApiException {
+        if (value == null && partial) {
+            return;
+        }
+        for (ConstraintViolation<Ville> violation : validator.validateValue(Ville.class, property, value)) {
+            throw new BadRequestException(violation.getMessage());
+        }
+    }
+
+    /**
+     * Autocompléter un nom de ville
+     * La recherche se fait dans l'index en mémoire, sans accents ni majuscules : "saint eti" trouve "Saint-Étienne"
+     * @param prefix le début des mots du nom
+     * @param limit le nombre de villes à renvoyer
+     * @return List<VilleDto> les villes trouvées, les plus peuplées d'abord
+     */
+    public List<VilleDto> getVillesByNameStartingWith(String prefix, int limit) throws ApiException {
         try {
-            return villeRepository.findByNomIsLike(prefix);
+            return autocompleteIndex.search(prefix, Math.min(limit, CursorPage.MAX_LIMIT));
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les villes");
         }
     }
 
     /**
-     * Récupérer les villes par population
-     * @param min la population minimale
-     * @return List<Ville> la liste des villes
+     * Récupérer les villes de plus de min habitants, par population croissante
+     * Les villes sont lues dans l'index en mémoire, sans requête
+     * @param min la population minimale (exclue)
+     * @param after le curseur
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
      */
-    @Transactional
-    public List<Ville> getVillesByPopulationGreaterThan(@RequestParam int min) throws ApiException {
+    public Slice<VilleDto> getVillesByPopulationGreaterThan(int min, long after, int limit) throws ApiException {
         try {
-            return villeRepository.findByNbHabitantsIsGreaterThan(min);
+            if (min == Integer.MAX_VALUE) {
+                return new SliceImpl<>(List.of());
+            }
+            return populationIndex.page(min + 1, Integer.MAX_VALUE, after, limit);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les villes");
         }
     }
     /**
-     * Récupérer les villes par population
+     * Récupérer les villes entre deux populations, par population croissante
+     * Les villes sont lues dans l'index en mémoire, sans requête
      * @param min la population minimale
      * @param max la population maximale
-     * @return List<Ville> la liste des villes
+     * @param after le curseur
+     * @param limit le nombre de villes à renvoyer
+     * @return Slice<VilleDto> la page de villes
      */
-    @Transactional
-    public List<Ville> getVillesByPopulationBetween(@RequestParam int min, @RequestParam int max) throws ApiException {
+    public Slice<VilleDto> getVillesByPopulationBetween(int min, int max, long after, int limit) throws ApiException {
         try {
-            return villeRepository.findByNbHabitantsBetween(min, max);
+            return populationIndex.page(min, max, after, limit);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
         } catch (Exception e) {
             throw new ApiException("Impossible de récupérer les villes");
         }
     }
 
     /**
-     * Exporter les villes en CSV
+     * Compter les villes entre deux populations, sans requête
+     * @param min la population minimale
+     * @param max la population maximale
+     * @return long le nombre de villes
+     */
+    public long countVillesByPopulationBetween(int min, int max) throws ApiException {
+        try {
+            return populationIndex.count(min, max);
+        } catch (Exception e) {
+            throw new ApiException("Impossible de compter les villes");
+        }
+    }
+
+    /**
+     * Calculer la population totale des villes entre deux populations, sans requête
+     * @param min la population minimale
+     * @param max la population maximale
+     * @return long la population totale
+     */
+    public long sumPopulationBetween(int min, int max) throws ApiException {
+        try {
+            return populationIndex.sum(min, max);
+        } catch (Exception e) {
+            throw new ApiException("Impossible de calculer la population");
+        }
+    }
+
+    /**
+     * Exporter les villes en CSV directement dans un flux de sortie
+     * Les villes sont lues par lots triés par id (keyset) : chaque lot est écrit puis envoyé au client
+     * avant la lecture du suivant. Chaque lot est lu dans sa propre transaction courte en lecture seule
+     * (voir VilleRepository.findByIdGreaterThanOrderByIdAsc) : aucune transaction ni connexion n'est gardée
+     * pendant l'écriture vers un client lent, et les villes d'un lot ne restent pas dans un contexte de persistance.
+     * La mémoire utilisée ne dépend donc que de la taille d'un lot, pas du nombre de villes.
+     * Les noms sont écrits selon la RFC 4180 (entre guillemets s'ils contiennent une virgule ou un guillemet).
      *
-     * @return String le contenu du fichier CSV
+     * @param outputStream le flux dans lequel écrire le CSV
      */
-    public String exportVillesToCSV() throws ApiException {
+    public void exportVillesToCSV(OutputStream outputStream) throws ApiException {
         try {
-            List<Ville> villes = villeRepository.findAll();
-            StringBuilder csv = new StringBuilder();
-            csv.append("id,nom,nbHabitants\n");
-            for (Ville ville : villes) {
-                csv.append(ville.getId()).append(",").append(ville.getNom()).append(",").append(ville.getNbHabitants()).append("\n");
-            }
-            return csv.toString();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writer.write("id,nom,nbHabitants\n");
+            long lastId = 0;
+            List<Ville> villes;
+            do {
+                villes = villeRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(exportBatchSize));
+                for (Ville ville : villes) {
+                    writer.append(String.valueOf(ville.getId())).append(",").append(Csv.field(ville.getNom())).append(",").append(String.valueOf(ville.getNbHabitants())).append("\n");
+                    lastId = ville.getId();
+                }
+                writer.flush();
+            } while (villes.size() == exportBatchSize);
+        } catch (Exception e) {
+            throw new ApiException("Impossible d'exporter les villes");
+        }
+    }
+
+    /**
+     * Exporter toutes les villes en tableau JSON directement dans un flux de sortie
+     * Les villes sont lues par lots triés par id (keyset), comme pour le CSV : chaque lot est lu dans sa propre
+     * transaction courte (voir VilleRepository.findDtoByIdGreaterThanOrderById), puis écrit dans le JsonGenerator
+     * (VilleDtoSerializer, noms de champs pré-encodés) et envoyé au client avant la lecture du suivant.
+     * Aucune connexion n'est gardée pendant l'écriture vers un client lent : quelques exports lents n'épuisent pas le pool.
+     * La mémoire utilisée ne dépend que de la taille d'un lot (app.export.batch-size).
+     *
+     * @param outputStream le flux dans lequel écrire le JSON
+     */
+    public void exportVillesToJson(OutputStream outputStream) throws ApiException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartArray();
+            long lastId = 0;
+            List<VilleDto> villes;
+            do {
+                villes = villeRepository.findDtoByIdGreaterThanOrderById(lastId, Limit.of(exportBatchSize));
+                for (VilleDto ville : villes) {
+                    VilleDtoSerializer.write(ville, generator);
+                    lastId = ville.getId();
+                }
+                generator.flush();
+            } while (villes.size() == exportBatchSize);
+            generator.writeEndArray();
         } catch (Exception e) {
             throw new ApiException("Impossible d'exporter les villes");
         }
@@ -160,4 +425,4 @@ public class VilleService {
 
 
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+-- Schéma initial : les tables telles que Hibernate les créait avec ddl-auto=update, avant les migrations
+-- Une base déjà créée par Hibernate est reprise à cette version (spring.flyway.baseline-on-migrate) :
+-- ce script ne lui est pas appliqué, seules les migrations suivantes le sont. Il ne doit donc plus changer.
+
+create table departement (
+    code varchar(255) not null,
+    id bigint not null auto_increment,
+    nom varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table ville (
+    nb_habitants integer not null,
+    departement_id bigint not null,
+    id bigint not null auto_increment,
+    nom varchar(50) not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table ville
+    add constraint FKarw4d31nygufo7ww9fvos6usr
+    foreign key (departement_id)
+    references departement (id);
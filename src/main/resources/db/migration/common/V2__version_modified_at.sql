@@ -0,0 +1,10 @@
+-- Verrouillage optimiste (@Version) et date de dernière modification (@UpdateTimestamp) des départements et des villes
+-- Les lignes existantes partent de la version 0, modifiées à la date de la migration
+
+alter table departement add column version bigint not null default 0;
+alter table departement add column modified_at datetime(6);
+update departement set modified_at = current_timestamp(6);
+
+alter table ville add column version bigint not null default 0;
+alter table ville add column modified_at datetime(6);
+update ville set modified_at = current_timestamp(6);
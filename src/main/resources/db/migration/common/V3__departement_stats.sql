@@ -0,0 +1,16 @@
+-- Statistiques de population tenues à jour par département (DepartementStatsService)
+-- Les départements existants reçoivent leurs statistiques calculées sur leurs villes
+
+create table departement_stats (
+    max_habitants integer,
+    min_habitants integer,
+    departement_id bigint not null,
+    nb_villes bigint not null,
+    population bigint not null,
+    primary key (departement_id)
+) engine=InnoDB;
+
+insert into departement_stats (departement_id, nb_villes, population, min_habitants, max_habitants)
+select d.id, count(v.id), coalesce(sum(v.nb_habitants), 0), min(v.nb_habitants), max(v.nb_habitants)
+from departement d left join ville v on v.departement_id = d.id
+group by d.id;
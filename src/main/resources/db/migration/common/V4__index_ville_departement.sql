@@ -0,0 +1,5 @@
+-- Une ville d'un département (findDtoByDepartementIdAndId), les villes d'un département triées par id
+create index idx_ville_departement_id on ville (departement_id, id);
+
+-- Les villes d'un département triées ou filtrées par population
+create index idx_ville_departement_nb_habitants on ville (departement_id, nb_habitants);
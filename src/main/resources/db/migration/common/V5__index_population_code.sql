@@ -0,0 +1,5 @@
+-- Villes de toute la France par population (recherches par tranche de population)
+create index idx_ville_nb_habitants on ville (nb_habitants);
+
+-- Département par son code
+create index idx_departement_code on departement (code);
@@ -0,0 +1,3 @@
+-- Recherche de ville par début de nom (nom like 'Saint%')
+-- H2 ne connaît pas les index sur un préfixe de colonne (nom(20) en MySQL) : l'index porte sur tout le nom
+create index idx_ville_nom on ville (nom);
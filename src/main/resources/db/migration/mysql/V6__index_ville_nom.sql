@@ -0,0 +1,3 @@
+-- Recherche de ville par début de nom (nom like 'Saint%')
+-- Index sur les 20 premiers caractères : assez sélectif pour un début de nom, plus petit qu'un index sur tout le nom
+create index idx_ville_nom on ville (nom(20));
@@ -0,0 +1,389 @@
+package com.example.demo.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test de charge de bout en bout de l'API des villes et des départements
+ * L'application est démarrée sur H2 avec un recensement synthétique (CensusDataset), puis chargée à débit constant
+ * par un mélange de lectures et d'écritures sur tous les endpoints de VilleController et DepartementController.
+ * La charge est en boucle ouverte : les requêtes partent à heure fixe, que les précédentes aient répondu ou non,
+ * et la latence est mesurée depuis l'heure prévue du départ. Un serveur qui ralentit voit donc sa file d'attente
+ * comptée dans les percentiles, au lieu de ralentir le client (omission coordonnée).
+ * Le rapport donne par endpoint le débit, les codes d'erreur et les percentiles p50/p95/p99/p99.9 (HdrHistogram),
+ * il est aussi écrit dans target/load-test-report.csv.
+ * Lancement : mvn test -Pbenchmark -Dtest=ApiLoadBenchmark -Dload.rate=500 -Dload.duration=PT60S -Dload.writes=0.2
+ */
+@Tag("benchmark")
+class ApiLoadBenchmark {
+
+	/**
+	 * Requêtes envoyées par seconde
+	 */
+	static final double RATE = Double.parseDouble(System.getProperty("load.rate", "200"));
+	static final Duration WARMUP = Duration.parse(System.getProperty("load.warmup", "PT5S"));
+	static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT30S"));
+	/**
+	 * Part des écritures dans le mélange, entre 0 et 1
+	 */
+	static final double WRITES = Double.parseDouble(System.getProperty("load.writes", "0.1"));
+	static final int DEPARTEMENTS = Integer.getInteger("load.departements", 100);
+	static final int VILLES = Integer.getInteger("load.villes", 35_000);
+	/**
+	 * Au-delà de ce nombre de requêtes sans réponse, les nouvelles requêtes sont abandonnées et comptées comme telles
+	 */
+	static final int MAX_IN_FLIGHT = Integer.getInteger("load.max-in-flight", 2_000);
+	private static final Path REPORT = Path.of("target", "load-test-report.csv");
+
+	/**
+	 * Une opération du mélange
+	 *
+	 * @param endpoint le nom de l'endpoint dans le rapport
+	 * @param weight le poids de l'opération parmi les lectures ou parmi les écritures
+	 * @param write true pour une écriture
+	 * @param request la requête à envoyer, ou null si l'opération n'a pas de cible (rien à supprimer par exemple)
+	 */
+	private record Operation(String endpoint, int weight, boolean write, Function<Workload, HttpRequest> request) {
+	}
+
+	/**
+	 * Les compteurs d'un endpoint, alimentés par les threads du client HTTP
+	 */
+	private static final class Stats {
+
+		final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+		final LongAdder ok = new LongAdder();
+		final LongAdder clientErrors = new LongAdder();
+		final LongAdder serverErrors = new LongAdder();
+		final LongAdder failures = new LongAdder();
+		final LongAdder dropped = new LongAdder();
+
+		void record(long intendedStart, HttpResponse<?> response, Throwable error) {
+			latencies.recordValue(Math.min((System.nanoTime() - intendedStart) / 1000, latencies.getHighestTrackableValue()));
+			if (error != null) {
+				failures.increment();
+			} else if (response.statusCode() >= 500) {
+				serverErrors.increment();
+			} else if (response.statusCode() >= 400) {
+				clientErrors.increment();
+			} else {
+				ok.increment();
+			}
+		}
+	}
+
+	/**
+	 * L'état du mélange : les données du recensement et les ressources créées par la charge
+	 * Les requêtes sont construites par le seul thread qui cadence la charge ; les ressources créées sont
+	 * ajoutées par les threads du client HTTP, d'où les files concurrentes.
+	 */
+	private static final class Workload {
+
+		final String base;
+		final CensusDataset dataset;
+		final SplittableRandom random = new SplittableRandom(7);
+		final ConcurrentLinkedDeque<long[]> createdVilles = new ConcurrentLinkedDeque<>();
+		final ConcurrentLinkedDeque<Long> createdDepartements = new ConcurrentLinkedDeque<>();
+
+		Workload(int port, CensusDataset dataset) {
+			this.base = "http://localhost:" + port;
+			this.dataset = dataset;
+		}
+
+		int ville() {
+			return random.nextInt(dataset.villeIds().length);
+		}
+
+		long villeId() {
+			return dataset.villeIds()[ville()];
+		}
+
+		long departementId() {
+			return dataset.departementIds()[random.nextInt(dataset.departementIds().length)];
+		}
+
+		int population() {
+			return CensusDataset.population(random);
+		}
+
+		String villeJson() {
+			return "{\"nom\":\"" + CensusDataset.nom(random) + "\",\"nbHabitants\":" + population() + "}";
+		}
+
+		String villesCsv(boolean withDepartement) {
+			StringBuilder csv = new StringBuilder(withDepartement ? "nom,nbHabitants,departementId\n" : "nom,nbHabitants\n");
+			for (int i = 0; i < 10; i++) {
+				csv.append(CensusDataset.nom(random)).append(',').append(population());
+				csv.append(withDepartement ? "," + departementId() + "\n" : "\n");
+			}
+			return csv.toString();
+		}
+
+		HttpRequest.Builder request(String path) {
+			return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30));
+		}
+
+		HttpRequest get(String path) {
+			return request(path).header("Accept", "application/json").GET().build();
+		}
+
+		HttpRequest send(String method, String path, String contentType, String body) {
+			return request(path).header("Content-Type", contentType).header("Prefer", "return=minimal")
+					.method(method, HttpRequest.BodyPublishers.ofString(body)).build();
+		}
+
+		/**
+		 * Garder l'id créé, lu dans l'en-tête Location, pour les mises à jour et suppressions suivantes
+		 */
+		void created(HttpResponse<?> response, long departementId) {
+			if (response.statusCode() != 201) {
+				return;
+			}
+			response.headers().firstValue("Location").ifPresent(location -> {
+				long id = Long.parseLong(location.substring(location.lastIndexOf('/') + 1));
+				if (departementId == 0) {
+					createdDepartements.add(id);
+				} else {
+					createdVilles.add(new long[]{departementId, id});
+				}
+			});
+		}
+	}
+
+	/**
+	 * Le mélange d'opérations
+	 * Les exports lisent toute la base : leur poids est faible, comme dans un usage réel.
+	 * POST /villes n'est pas dans le mélange : la référence Ville.departement est ignorée à la lecture du JSON
+	 * (@JsonBackReference), l'endpoint répond donc toujours 400 ; les villes sont créées par POST /departements/{id}/villes.
+	 */
+	private static final List<Operation> OPERATIONS = List.of(
+			new Operation("GET /villes", 10, false, w -> w.get("/villes?limit=20&after=" + w.villeId())),
+			new Operation("GET /villes?page", 5, false, w -> w.get("/villes?page=" + w.random.nextInt(50) + "&size=20")),
+			new Operation("GET /villes/{id}", 20, false, w -> w.get("/villes/" + w.villeId())),
+			new Operation("GET /villes/search", 10, false, w -> w.get("/villes/search?prefix=" + CensusDataset.nom(w.random).substring(0, 3))),
+			new Operation("GET /villes/min", 4, false, w -> w.get("/villes/min?min=" + w.population() + "&limit=20")),
+			new Operation("GET /villes/between", 4, false, w -> {
+				int min = w.population();
+				return w.get("/villes/between?min=" + min + "&max=" + (min * 2) + "&limit=20");
+			}),
+			new Operation("GET /villes/between/count", 3, false, w -> w.get("/villes/between/count?min=" + w.population())),
+			new Operation("GET /villes/between/sum", 3, false, w -> w.get("/villes/between/sum?max=" + w.population())),
+			new Operation("GET /villes/export", 1, false, w -> w.get("/villes/export")),
+			new Operation("GET /departements", 4, false, w -> w.get("/departements?limit=10")),
+			new Operation("GET /departements?page", 2, false, w -> w.get("/departements?page=" + w.random.nextInt(5) + "&size=10&villes=AUCUNE")),
+			new Operation("GET /departements/{id}", 8, false, w -> w.get("/departements/" + w.departementId())),
+			new Operation("GET /departements/stats", 2, false, w -> w.get("/departements/stats")),
+			new Operation("GET /departements/{id}/stats", 4, false, w -> w.get("/departements/" + w.departementId() + "/stats")),
+			new Operation("GET /departements/{id}/villes", 6, false, w -> w.get("/departements/" + w.departementId() + "/villes")),
+			new Operation("GET /departements/{id}/villes/{villeId}", 6, false, w -> {
+				int ville = w.ville();
+				return w.get("/departements/" + w.dataset.villeDepartementIds()[ville] + "/villes/" + w.dataset.villeIds()[ville]);
+			}),
+			new Operation("GET /departements/{id}/villes/desc", 4, false, w -> w.get("/departements/" + w.departementId() + "/villes/desc?limit=20")),
+			new Operation("GET /departements/{id}/villes/between", 3, false, w -> {
+				int min = w.population();
+				return w.get("/departements/" + w.departementId() + "/villes/between?min=" + min + "&max=" + (min * 10) + "&limit=20");
+			}),
+			new Operation("GET /departements/export", 1, false, w -> w.get("/departements/export")),
+
+			new Operation("POST /departements/{id}/villes", 20, true,
+					w -> w.send("POST", "/departements/" + w.departementId() + "/villes", "application/json", w.villeJson())),
+			new Operation("PUT /villes/{id}", 10, true, w -> w.send("PUT", "/villes/" + w.villeId(), "application/json", w.villeJson())),
+			new Operation("PATCH /villes/{id}", 10, true,
+					w -> w.send("PATCH", "/villes/" + w.villeId(), "application/json", "{\"nbHabitants\":" + w.population() + "}")),
+			new Operation("PUT /departements/{id}/villes/{villeId}", 8, true, w -> {
+				int ville = w.ville();
+				return w.send("PUT", "/departements/" + w.dataset.villeDepartementIds()[ville] + "/villes/" + w.dataset.villeIds()[ville],
+						"application/json", w.villeJson());
+			}),
+			new Operation("PATCH /departements/{id}/villes/{villeId}", 8, true, w -> {
+				int ville = w.ville();
+				return w.send("PATCH", "/departements/" + w.dataset.villeDepartementIds()[ville] + "/villes/" + w.dataset.villeIds()[ville],
+						"application/json", "{\"nbHabitants\":" + w.population() + "}");
+			}),
+			new Operation("DELETE /villes/{id}", 8, true, w -> {
+				long[] ville = w.createdVilles.pollFirst();
+				return ville == null ? null : w.send("DELETE", "/villes/" + ville[1], "application/json", "");
+			}),
+			new Operation("DELETE /departements/{id}/villes/{villeId}", 8, true, w -> {
+				long[] ville = w.createdVilles.pollFirst();
+				return ville == null ? null : w.send("DELETE", "/departements/" + ville[0] + "/villes/" + ville[1], "application/json", "");
+			}),
+			new Operation("POST /departements", 4, true, w -> w.send("POST", "/departements", "application/json",
+					"{\"nom\":\"" + CensusDataset.nom(w.random) + "\",\"code\":\"" + (100 + w.random.nextInt(900)) + "\"}")),
+			new Operation("PUT /departements", 3, true, w -> {
+				Long id = w.createdDepartements.peekLast();
+				return id == null ? null : w.send("PUT", "/departements", "application/json",
+						"{\"id\":" + id + ",\"nom\":\"" + CensusDataset.nom(w.random) + "\",\"code\":\"" + (100 + w.random.nextInt(900)) + "\"}");
+			}),
+			new Operation("DELETE /departements/{id}", 3, true, w -> {
+				Long id = w.createdDepartements.pollFirst();
+				return id == null ? null : w.send("DELETE", "/departements/" + id, "application/json", "");
+			}),
+			new Operation("POST /villes/import", 1, true, w -> w.send("POST", "/villes/import", "text/csv", w.villesCsv(true))),
+			new Operation("POST /departements/{id}/villes/import", 1, true,
+					w -> w.send("POST", "/departements/" + w.departementId() + "/villes/import", "text/csv", w.villesCsv(false)))
+	);
+
+	@Test
+	void loadTest() throws Exception {
+		try (ConfigurableApplicationContext context = BenchmarkApplication.start("bench-load", "test");
+			 HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+			Workload workload = new Workload(BenchmarkApplication.port(context), CensusDataset.seed(context, DEPARTEMENTS, VILLES));
+			run(client, workload, WARMUP);
+			Map<String, Stats> stats = run(client, workload, DURATION);
+
+			String report = report(stats);
+			System.out.printf("%ndébit=%.0f req/s écritures=%.0f%% durée=%s départements=%d villes=%d latence SQL=%s%n%s",
+					RATE, WRITES * 100, DURATION, DEPARTEMENTS, VILLES, SlowDatabase.LATENCY, report);
+			Files.createDirectories(REPORT.getParent());
+			Files.writeString(REPORT, csv(stats));
+			assertTrue(stats.values().stream().mapToLong(s -> s.ok.sum()).sum() > 0, "aucune requête n'a abouti");
+		}
+	}
+
+	/**
+	 * Envoyer la charge pendant la durée donnée, puis attendre les dernières réponses
+	 *
+	 * @return Map<String, Stats> les compteurs par endpoint, dans l'ordre du mélange
+	 */
+	private Map<String, Stats> run(HttpClient client, Workload workload, Duration duration) throws InterruptedException {
+		Map<String, Stats> stats = new LinkedHashMap<>();
+		OPERATIONS.forEach(operation -> stats.put(operation.endpoint(), new Stats()));
+		Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+		long interval = (long) (1e9 / RATE);
+		long start = System.nanoTime();
+		long end = start + duration.toNanos();
+		for (long i = 0; start + i * interval < end; i++) {
+			long intendedStart = start + i * interval;
+			long wait = intendedStart - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			Operation operation = pick(workload);
+			HttpRequest request = operation.request().apply(workload);
+			while (request == null) {
+				operation = pick(workload);
+				request = operation.request().apply(workload);
+			}
+			Stats endpoint = stats.get(operation.endpoint());
+			if (!inFlight.tryAcquire()) {
+				endpoint.dropped.increment();
+				continue;
+			}
+			boolean createsVille = operation.endpoint().equals("POST /departements/{id}/villes");
+			boolean create = createsVille || operation.endpoint().equals("POST /departements");
+			long departementId = createsVille ? departementOf(request) : 0;
+			client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+				endpoint.record(intendedStart, response, error);
+				if (create && error == null) {
+					workload.created(response, departementId);
+				}
+				inFlight.release();
+			});
+		}
+		inFlight.tryAcquire(MAX_IN_FLIGHT, 1, TimeUnit.MINUTES);
+		return stats;
+	}
+
+	/**
+	 * Tirer une opération : d'abord lecture ou écriture selon load.writes, puis selon les poids
+	 */
+	private static Operation pick(Workload workload) {
+		boolean write = workload.random.nextDouble() < WRITES;
+		List<Operation> candidates = OPERATIONS.stream().filter(operation -> operation.write() == write).toList();
+		int draw = workload.random.nextInt(candidates.stream().mapToInt(Operation::weight).sum());
+		for (Operation operation : candidates) {
+			draw -= operation.weight();
+			if (draw < 0) {
+				return operation;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * L'id du département d'une requête /departements/{id}/villes
+	 */
+	private static long departementOf(HttpRequest request) {
+		String[] segments = request.uri().getPath().split("/");
+		return Long.parseLong(segments[2]);
+	}
+
+	private static String report(Map<String, Stats> stats) {
+		StringBuilder report = new StringBuilder(String.format("%-45s %8s %8s %6s %6s %8s %9s %9s %9s %9s %9s %9s%n",
+				"endpoint", "requêtes", "ok", "4xx", "5xx", "échecs", "req/s", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "max ms"));
+		for (String[] row : rows(stats)) {
+			report.append(String.format("%-45s %8s %8s %6s %6s %8s %9s %9s %9s %9s %9s %9s%n", (Object[]) row));
+		}
+		return report.toString();
+	}
+
+	private static String csv(Map<String, Stats> stats) {
+		StringBuilder csv = new StringBuilder("endpoint,requests,ok,4xx,5xx,failures,throughput,p50_ms,p95_ms,p99_ms,p999_ms,max_ms\n");
+		for (String[] row : rows(stats)) {
+			csv.append(String.join(",", row)).append('\n');
+		}
+		return csv.toString();
+	}
+
+	/**
+	 * Les lignes du rapport, une par endpoint appelé puis le total
+	 * Les échecs comptent les erreurs réseau et les requêtes abandonnées faute de place
+	 */
+	private static List<String[]> rows(Map<String, Stats> stats) {
+		List<String[]> rows = new ArrayList<>();
+		Histogram total = new Histogram(TimeUnit.MINUTES.toMicros(10), 3);
+		long[] totals = new long[5];
+		stats.forEach((endpoint, s) -> {
+			long[] counts = {s.ok.sum(), s.clientErrors.sum(), s.serverErrors.sum(), s.failures.sum() + s.dropped.sum(), s.latencies.getTotalCount() + s.dropped.sum()};
+			if (counts[4] == 0) {
+				return;
+			}
+			rows.add(row(endpoint, counts, s.latencies));
+			total.add(s.latencies);
+			for (int i = 0; i < counts.length; i++) {
+				totals[i] += counts[i];
+			}
+		});
+		rows.add(row("TOTAL", totals, total));
+		return rows;
+	}
+
+	private static String[] row(String endpoint, long[] counts, Histogram latencies) {
+		return new String[]{endpoint, String.valueOf(counts[4]), String.valueOf(counts[0]), String.valueOf(counts[1]),
+				String.valueOf(counts[2]), String.valueOf(counts[3]),
+				String.format(Locale.ROOT, "%.1f", latencies.getTotalCount() / (DURATION.toNanos() / 1e9)),
+				millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(95)),
+				millis(latencies.getValueAtPercentile(99)), millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue())};
+	}
+
+	private static String millis(long micros) {
+		return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+	}
+}
@@ -0,0 +1,38 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Démarrage de l'application pour les benchmarks de charge
+ * Chaque démarrage a son port libre et sa base H2 (mode MySQL) neuve, avec la latence SQL simulée par SlowDatabase.
+ */
+final class BenchmarkApplication {
+
+	private BenchmarkApplication() {
+	}
+
+	/**
+	 * Démarrer l'application
+	 *
+	 * @param database le nom de la base H2 en mémoire
+	 * @param profiles les profils actifs, en plus de la configuration de test
+	 * @return ConfigurableApplicationContext le contexte démarré
+	 */
+	static ConfigurableApplicationContext start(String database, String... profiles) {
+		return new SpringApplicationBuilder(DemoApplication.class, SlowDatabase.class)
+				.profiles(profiles)
+				.properties("server.port=0",
+						"spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+						"spring.r2dbc.url=r2dbc:h2:mem:///" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+						"spring.jpa.properties.hibernate.generate_statistics=false",
+						"spring.datasource.hikari.maximum-pool-size=20")
+				.run();
+	}
+
+	static int port(ConfigurableApplicationContext context) {
+		return ((WebServerApplicationContext) context).getWebServer().getPort();
+	}
+}
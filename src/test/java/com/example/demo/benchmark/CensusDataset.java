@@ -0,0 +1,80 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.VilleImportService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Recensement synthétique inséré dans l'application avant un benchmark
+ * Les populations suivent une loi de Pareto comme les communes françaises (beaucoup de villages, peu de grandes villes),
+ * les noms sont faits de syllabes courantes. La graine est fixe : deux runs de même taille ont les mêmes données.
+ *
+ * @param departementIds les ids des départements
+ * @param villeIds les ids des villes
+ * @param villeDepartementIds le département de chaque ville de villeIds
+ */
+record CensusDataset(long[] departementIds, long[] villeIds, long[] villeDepartementIds) {
+
+	private static final String[] SYLLABES = {"saint", "mont", "ville", "bourg", "la", "le", "roche", "val", "beau",
+			"fort", "bel", "champ", "font", "mar", "ber", "cha", "tel", "lon", "sur", "neuf"};
+
+	/**
+	 * Remplir l'application : les départements par leur repository, les villes par l'import CSV
+	 *
+	 * @param context l'application démarrée
+	 * @param departements le nombre de départements
+	 * @param villes le nombre de villes, réparties au hasard entre les départements
+	 * @return CensusDataset les ids insérés
+	 */
+	static CensusDataset seed(ConfigurableApplicationContext context, int departements, int villes) throws Exception {
+		SplittableRandom random = new SplittableRandom(42);
+		List<Departement> entities = new ArrayList<>();
+		for (int i = 1; i <= departements; i++) {
+			entities.add(new Departement("Département " + i, String.format("%03d", i)));
+		}
+		long[] departementIds = context.getBean(DepartementRepository.class).saveAll(entities).stream().mapToLong(Departement::getId).toArray();
+
+		StringBuilder csv = new StringBuilder("nom,nbHabitants,departementId\n");
+		for (int i = 0; i < villes; i++) {
+			csv.append(nom(random)).append(',')
+					.append(population(random)).append(',')
+					.append(departementIds[random.nextInt(departementIds.length)]).append('\n');
+		}
+		context.getBean(VilleImportService.class).importVilles(
+				new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), VilleImportService.Format.CSV, null);
+
+		List<long[]> rows = context.getBean(JdbcTemplate.class).query("select id, departement_id from ville order by id",
+				(row, i) -> new long[]{row.getLong(1), row.getLong(2)});
+		return new CensusDataset(departementIds,
+				rows.stream().mapToLong(row -> row[0]).toArray(),
+				rows.stream().mapToLong(row -> row[1]).toArray());
+	}
+
+	/**
+	 * Un nom de 2 ou 3 syllabes, comme "Saint-Montval"
+	 */
+	static String nom(SplittableRandom random) {
+		StringBuilder nom = new StringBuilder();
+		int syllabes = 2 + random.nextInt(2);
+		for (int i = 0; i < syllabes; i++) {
+			String syllabe = SYLLABES[random.nextInt(SYLLABES.length)];
+			nom.append(i == 0 || random.nextInt(4) == 0 ? (i == 0 ? "" : "-") + Character.toUpperCase(syllabe.charAt(0)) + syllabe.substring(1) : syllabe);
+		}
+		return nom.toString();
+	}
+
+	/**
+	 * Une population tirée d'une loi de Pareto (minimum 50 habitants), bornée à 2 millions
+	 */
+	static int population(SplittableRandom random) {
+		return (int) Math.min(2_000_000, 50 / Math.pow(1 - random.nextDouble(), 1 / 1.1));
+	}
+}
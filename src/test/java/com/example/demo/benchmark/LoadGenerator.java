@@ -0,0 +1,117 @@
+package com.example.demo.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Générateur de charge des benchmarks : un nombre fixe de clients enchaînent les requêtes (boucle fermée)
+ * Les clients sont des threads de plateforme : ils ne prennent pas les threads porteurs des threads virtuels du serveur.
+ */
+final class LoadGenerator {
+
+	/**
+	 * Résultat d'un run
+	 *
+	 * @param name le nom du run
+	 * @param ok le nombre de réponses 2xx
+	 * @param rejected le nombre de réponses 503
+	 * @param errors le nombre d'autres réponses et d'erreurs
+	 * @param throughput le nombre de réponses 2xx par seconde
+	 * @param latencies les latences en µs des réponses 2xx
+	 */
+	record Result(String name, long ok, long rejected, long errors, double throughput, Histogram latencies) {
+
+		/**
+		 * Latence en ms au percentile donné (entre 0 et 100)
+		 */
+		double percentile(double percentile) {
+			return latencies.getValueAtPercentile(percentile) / 1000.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-10s %10.0f req/s  ok=%-8d 503=%-8d erreurs=%-6d p50=%8.1f ms  p99=%8.1f ms  max=%8.1f ms",
+					name, throughput, ok, rejected, errors, percentile(50), percentile(99), latencies.getMaxValue() / 1000.0);
+		}
+	}
+
+	/**
+	 * Histogramme de latences en µs, jusqu'à 10 minutes, à 3 chiffres significatifs
+	 */
+	static Histogram histogram() {
+		return new Histogram(TimeUnit.MINUTES.toMicros(10), 3);
+	}
+
+	private LoadGenerator() {
+	}
+
+	/**
+	 * Charger un serveur : concurrency clients parcourent les urls en boucle pendant la durée donnée
+	 *
+	 * @param name le nom du run
+	 * @param port le port du serveur
+	 * @param urls les chemins demandés, à tour de rôle
+	 * @param accept l'en-tête Accept des requêtes
+	 * @param concurrency le nombre de clients
+	 * @param duration la durée du run
+	 * @return Result le résultat du run
+	 */
+	static Result run(String name, int port, List<String> urls, String accept, int concurrency, Duration duration) throws Exception {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Future<Histogram>> clients = new ArrayList<>();
+		try (ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+			 HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+			for (int i = 0; i < concurrency; i++) {
+				int offset = i;
+				clients.add(executor.submit(() -> {
+					// le nombre de 503 et d'erreurs est gardé dans le tag de l'histogramme
+					Histogram latencies = histogram();
+					long rejected = 0;
+					long errors = 0;
+					for (int n = offset; System.nanoTime() < deadline; n++) {
+						HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + urls.get(n % urls.size())))
+								.header("Accept", accept).build();
+						long start = System.nanoTime();
+						try {
+							int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+							if (status == 503) {
+								rejected++;
+							} else if (status / 100 == 2) {
+								latencies.recordValue(Math.min((System.nanoTime() - start) / 1000, latencies.getHighestTrackableValue()));
+							} else {
+								errors++;
+							}
+						} catch (Exception e) {
+							errors++;
+						}
+					}
+					latencies.setTag(rejected + "/" + errors);
+					return latencies;
+				}));
+			}
+			Histogram all = histogram();
+			long rejected = 0;
+			long errors = 0;
+			for (Future<Histogram> future : clients) {
+				Histogram latencies = future.get();
+				String[] counts = latencies.getTag().split("/");
+				rejected += Long.parseLong(counts[0]);
+				errors += Long.parseLong(counts[1]);
+				all.add(latencies);
+			}
+			long ok = all.getTotalCount();
+			return new Result(name, ok, rejected, errors, ok / (duration.toNanos() / 1e9), all);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.demo.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de charge : API classique (MVC + JPA) contre API non bloquante (/reactive, R2DBC)
+ * Les deux API sont chargées tour à tour sur la même application, avec la même latence SQL simulée et la même taille
+ * de pool de connexions (20), sur des lectures équivalentes : une page de villes, un département et ses villes.
+ * Lancement : mvn test -Pbenchmark -Dtest=ReactiveBenchmark -Dbench.concurrency=1000 -Dbench.duration=PT20S -Dbench.db-latency=PT0.02S
+ */
+@Tag("benchmark")
+class ReactiveBenchmark {
+
+	@Test
+	void compareMvcAndReactive() throws Exception {
+		try (ConfigurableApplicationContext context = BenchmarkApplication.start("bench-reactive", "test")) {
+			long id = CensusDataset.seed(context, 50, 1000).departementIds()[0];
+			int port = BenchmarkApplication.port(context);
+			List<String> mvc = List.of("/villes?limit=20", "/departements/" + id + "/villes");
+			List<String> reactive = List.of("/reactive/villes?limit=20", "/reactive/departements/" + id + "/villes");
+
+			LoadGenerator.run("mvc", port, mvc, "application/json", ThreadModelBenchmark.CONCURRENCY, ThreadModelBenchmark.WARMUP);
+			LoadGenerator.run("reactive", port, reactive, "application/json", ThreadModelBenchmark.CONCURRENCY, ThreadModelBenchmark.WARMUP);
+			List<LoadGenerator.Result> results = List.of(
+					LoadGenerator.run("mvc", port, mvc, "application/json", ThreadModelBenchmark.CONCURRENCY, ThreadModelBenchmark.DURATION),
+					LoadGenerator.run("reactive", port, reactive, "application/json", ThreadModelBenchmark.CONCURRENCY, ThreadModelBenchmark.DURATION));
+
+			System.out.printf("%nconcurrence=%d durée=%s latence SQL=%s%n", ThreadModelBenchmark.CONCURRENCY, ThreadModelBenchmark.DURATION, SlowDatabase.LATENCY);
+			results.forEach(System.out::println);
+			for (LoadGenerator.Result result : results) {
+				assertTrue(result.ok() > 0, result.name() + " n'a servi aucune requête");
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.demo.benchmark;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Ajoute la latence bench.db-latency à chaque requête SQL, connexion tenue, comme une base distante lente
+ * En JDBC le thread attend la réponse ; en R2DBC la réponse est seulement retardée, sans bloquer de thread.
+ * Enregistré comme source de l'application d'un benchmark seulement : il n'est pas annoté et n'est donc pas scanné.
+ */
+class SlowDatabase implements BeanPostProcessor {
+
+	static final Duration LATENCY = Duration.parse(System.getProperty("bench.db-latency", "PT0.02S"));
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (bean instanceof DataSource dataSource) {
+			return jdbc(DataSource.class, dataSource);
+		}
+		if (bean instanceof ConnectionFactory connectionFactory) {
+			return r2dbc(ConnectionFactory.class, connectionFactory);
+		}
+		return bean;
+	}
+
+	/**
+	 * Envelopper un objet JDBC : les connexions et les statements qu'il renvoie sont enveloppés à leur tour
+	 */
+	private static Object jdbc(Class<?> type, Object target) {
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+			if (Statement.class.isAssignableFrom(type) && method.getName().startsWith("execute")) {
+				Thread.sleep(LATENCY);
+			}
+			Object result = invoke(method, target, args);
+			Class<?> returnType = method.getReturnType();
+			if (result != null && returnType.isInterface()
+					&& (returnType == Connection.class || Statement.class.isAssignableFrom(returnType))) {
+				return jdbc(returnType, result);
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Envelopper un objet R2DBC : les connexions et les statements qu'il émet ou renvoie sont enveloppés à leur tour
+	 */
+	private static Object r2dbc(Class<?> type, Object target) {
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+			Object result = invoke(method, target, args);
+			if (type == ConnectionFactory.class && method.getName().equals("create")) {
+				return Mono.from((Publisher<?>) result).map(connection -> r2dbc(io.r2dbc.spi.Connection.class, connection));
+			}
+			if (type == io.r2dbc.spi.Statement.class && method.getName().equals("execute")) {
+				return Flux.from((Publisher<?>) result).delaySubscription(LATENCY);
+			}
+			Class<?> returnType = method.getReturnType();
+			if (result != null && returnType == io.r2dbc.spi.Statement.class) {
+				return r2dbc(returnType, result);
+			}
+			return result;
+		});
+	}
+
+	private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
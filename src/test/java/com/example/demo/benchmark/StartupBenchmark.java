@@ -0,0 +1,188 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.DemoApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de démarrage : temps jusqu'à la première réponse 200 de /villes, et mémoire résidente (RSS) à cet instant
+ * L'application extraite par le profil Maven fast-startup est lancée plusieurs fois dans une JVM neuve, sur une base H2
+ * en mémoire, pour chaque variante :
+ * - standard : le jar seul ;
+ * - fast-startup : le profil Spring fast-startup (beans paresseux, JPA démarré en parallèle, pas de validation du schéma) ;
+ * - AOT : en plus, les classes de configuration générées à la compilation (spring.aot.enabled) ;
+ * - AppCDS : en plus, l'archive des classes chargées, enregistrée par un démarrage d'entraînement avec le même classpath.
+ * Le temps est mesuré depuis le lancement du processus : il comprend le démarrage de la JVM.
+ * Le rapport est aussi écrit dans target/startup-benchmark.csv, les logs des démarrages dans target/startup-benchmark/.
+ * Lancement : mvn -Pfast-startup package -DskipTests, puis mvn test -Pbenchmark -Dtest=StartupBenchmark -Dstartup.runs=5
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+	static final int RUNS = Integer.getInteger("startup.runs", 3);
+	static final Duration TIMEOUT = Duration.parse(System.getProperty("startup.timeout", "PT2M"));
+	private static final Path APPLICATION = Path.of("target", "fast-startup");
+	private static final Path LOGS = Path.of("target", "startup-benchmark");
+	private static final Path REPORT = Path.of("target", "startup-benchmark.csv");
+	private static final Path ARCHIVE = LOGS.resolve("benchmark.jsa");
+
+	private static final List<String> FAST_STARTUP = List.of("-Dspring.profiles.active=fast-startup");
+	private static final List<String> AOT = List.of("-Dspring.profiles.active=fast-startup", "-Dspring.aot.enabled=true");
+
+	/**
+	 * Une variante : son nom et ses options de JVM
+	 */
+	private record Variant(String name, List<String> jvmArguments) {
+	}
+
+	/**
+	 * Un démarrage mesuré
+	 *
+	 * @param millis le temps jusqu'à la première réponse 200 de /villes, en ms
+	 * @param rssKilobytes la mémoire résidente du processus à cet instant, -1 hors Linux
+	 */
+	private record Startup(long millis, long rssKilobytes) {
+	}
+
+	@Test
+	void compareStartupVariants() throws Exception {
+		Path jar = applicationJar();
+		Files.createDirectories(LOGS);
+		String classpath = String.join(File.pathSeparator, jar.toString(), location(org.h2.Driver.class), location(io.r2dbc.h2.H2ConnectionFactory.class));
+
+		train(classpath);
+		List<Variant> variants = List.of(
+				new Variant("standard", List.of()),
+				new Variant("fast-startup", FAST_STARTUP),
+				new Variant("fast-startup + AOT", AOT),
+				new Variant("fast-startup + AOT + AppCDS", concat(AOT, List.of("-XX:SharedArchiveFile=" + ARCHIVE.toAbsolutePath(), "-Xlog:cds=off"))));
+
+		StringBuilder report = new StringBuilder(String.format("%n%-30s %10s %10s %10s %12s%n", "variante", "p50 (ms)", "min (ms)", "max (ms)", "RSS p50 (Mo)"));
+		StringBuilder csv = new StringBuilder("variant,runs,p50_ms,min_ms,max_ms,rss_p50_mb\n");
+		for (Variant variant : variants) {
+			List<Startup> startups = new ArrayList<>();
+			for (int run = 0; run < RUNS; run++) {
+				startups.add(start(variant, classpath, run));
+			}
+			long[] millis = startups.stream().mapToLong(Startup::millis).sorted().toArray();
+			long[] rss = startups.stream().mapToLong(Startup::rssKilobytes).sorted().toArray();
+			double rssMegabytes = rss[rss.length / 2] < 0 ? Double.NaN : rss[rss.length / 2] / 1024.0;
+			report.append(String.format("%-30s %10d %10d %10d %12.0f%n", variant.name(), millis[millis.length / 2], millis[0], millis[millis.length - 1], rssMegabytes));
+			csv.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.1f%n", variant.name(), RUNS, millis[millis.length / 2], millis[0], millis[millis.length - 1], rssMegabytes));
+		}
+		System.out.printf("%nJava %s, %d démarrages par variante%s", Runtime.version(), RUNS, report);
+		Files.writeString(REPORT, csv);
+	}
+
+	/**
+	 * Le jar extrait par mvn -Pfast-startup package
+	 */
+	private static Path applicationJar() throws IOException {
+		assertTrue(Files.isDirectory(APPLICATION), "Lancer d'abord mvn -Pfast-startup package -DskipTests");
+		try (Stream<Path> files = Files.list(APPLICATION)) {
+			return files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+					.orElseThrow(() -> new AssertionError("Pas de jar dans " + APPLICATION));
+		}
+	}
+
+	/**
+	 * Démarrage d'entraînement : les classes chargées jusqu'à la fin du démarrage sont enregistrées dans l'archive AppCDS
+	 * L'archive n'est valable que pour le classpath avec lequel elle a été créée, d'où cet entraînement propre au benchmark.
+	 */
+	private static void train(String classpath) throws Exception {
+		Files.deleteIfExists(ARCHIVE);
+		List<String> jvmArguments = concat(AOT, List.of("-XX:ArchiveClassesAtExit=" + ARCHIVE.toAbsolutePath(), "-Xlog:cds=off",
+				"-Dspring.context.exit=onRefresh", "-Dspring.main.lazy-initialization=false"));
+		Process process = launch(jvmArguments, classpath, freePort(), LOGS.resolve("training.log"));
+		assertTrue(process.waitFor() == 0 && Files.exists(ARCHIVE), "Entraînement AppCDS en échec, voir " + LOGS.resolve("training.log"));
+	}
+
+	/**
+	 * Lancer l'application et attendre la première réponse 200 de /villes
+	 */
+	private static Startup start(Variant variant, String classpath, int run) throws Exception {
+		int port = freePort();
+		Path log = LOGS.resolve(variant.name().replaceAll("[^a-zA-Z]+", "-") + "-" + run + ".log");
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/villes")).timeout(Duration.ofSeconds(10)).build();
+		long start = System.nanoTime();
+		Process process = launch(variant.jvmArguments(), classpath, port, log);
+		try {
+			while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+				assertTrue(process.isAlive(), variant.name() + " s'est arrêté, voir " + log);
+				try {
+					if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+						return new Startup((System.nanoTime() - start) / 1_000_000, rss(process));
+					}
+				} catch (IOException e) {
+					// Le serveur n'écoute pas encore
+				}
+				Thread.sleep(10);
+			}
+			throw new AssertionError(variant.name() + " n'a pas répondu en " + TIMEOUT + ", voir " + log);
+		} finally {
+			process.destroy();
+			process.waitFor();
+		}
+	}
+
+	private static Process launch(List<String> jvmArguments, String classpath, int port, Path log) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(jvmArguments);
+		command.addAll(List.of("-cp", classpath, DemoApplication.class.getName(),
+				"--server.port=" + port,
+				"--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.r2dbc.url=r2dbc:h2:mem:///startup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+				"--spring.r2dbc.username=sa",
+				"--spring.r2dbc.password=",
+				"--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"));
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+	}
+
+	/**
+	 * Mémoire résidente du processus en Ko (VmRSS), -1 si /proc n'existe pas
+	 */
+	private static long rss(Process process) throws IOException {
+		Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+		if (!Files.exists(status)) {
+			return -1;
+		}
+		return Files.readAllLines(status).stream().filter(line -> line.startsWith("VmRSS:"))
+				.map(line -> Long.parseLong(line.replaceAll("[^0-9]", ""))).findFirst().orElse(-1L);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static String location(Class<?> type) throws Exception {
+		return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+	}
+
+	private static List<String> concat(List<String> first, List<String> second) {
+		return Stream.concat(first.stream(), second.stream()).toList();
+	}
+}
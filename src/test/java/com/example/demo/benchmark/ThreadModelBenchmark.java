@@ -0,0 +1,51 @@
+package com.example.demo.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark de charge : threads de plateforme (pool Tomcat) contre threads virtuels (profil virtual-threads)
+ * L'application est démarrée deux fois sur H2, avec une latence ajoutée à chaque requête SQL pour simuler une base lente,
+ * puis chargée par un nombre fixe de clients qui enchaînent les requêtes sur /villes et /departements.
+ * Les départements sont demandés sans leurs villes (villes=AUCUNE) : avec 1000 villes par département, la sérialisation
+ * des noms prendrait le pas sur l'attente de la base, qui est ce que l'on compare ici.
+ * Lancement : mvn test -Pbenchmark -Dtest=ThreadModelBenchmark -Dbench.concurrency=1000 -Dbench.duration=PT20S -Dbench.db-latency=PT0.02S
+ */
+@Tag("benchmark")
+class ThreadModelBenchmark {
+
+	static final int CONCURRENCY = Integer.getInteger("bench.concurrency", 500);
+	static final Duration WARMUP = Duration.parse(System.getProperty("bench.warmup", "PT3S"));
+	static final Duration DURATION = Duration.parse(System.getProperty("bench.duration", "PT10S"));
+	private static final List<String> URLS = List.of("/villes?limit=20", "/departements?limit=10&villes=AUCUNE");
+
+	@Test
+	void compareThreadModels() throws Exception {
+		List<LoadGenerator.Result> results = List.of(run("platform"), run("virtual"));
+		System.out.printf("%nconcurrence=%d durée=%s latence SQL=%s%n", CONCURRENCY, DURATION, SlowDatabase.LATENCY);
+		results.forEach(System.out::println);
+		for (LoadGenerator.Result result : results) {
+			assertTrue(result.ok() > 0, result.name() + " n'a servi aucune requête");
+		}
+	}
+
+	private LoadGenerator.Result run(String mode) throws Exception {
+		List<String> profiles = new ArrayList<>(List.of("test"));
+		if (mode.equals("virtual")) {
+			profiles.add("virtual-threads");
+		}
+		try (ConfigurableApplicationContext context = BenchmarkApplication.start("bench-" + mode, profiles.toArray(String[]::new))) {
+			CensusDataset.seed(context, 50, 1000);
+			int port = BenchmarkApplication.port(context);
+			LoadGenerator.run(mode, port, URLS, "application/json", CONCURRENCY, WARMUP);
+			return LoadGenerator.run(mode, port, URLS, "application/json", CONCURRENCY, DURATION);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Négociation des formats binaires par Accept, et compression gzip des réponses texte, sur un vrai serveur
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class BinaryFormatsTests {
+
+	private final HttpClient client = HttpClient.newHttpClient();
+
+	private final ObjectMapper json = new ObjectMapper();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	private long departementId;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+		Departement departement = new Departement("Loire", "042");
+		for (int i = 0; i < 50; i++) {
+			departement.addVille(new Ville("Saint-Étienne-" + i, 1000 + i));
+		}
+		departementId = departementRepository.save(departement).getId();
+	}
+
+	@Test
+	void cborAndSmileCarryTheSameContentAsJson() throws Exception {
+		for (String url : new String[]{"/villes", "/departements/" + departementId + "/villes"}) {
+			HttpResponse<byte[]> reference = get(url, "application/json", null);
+			JsonNode expected = json.readTree(reference.body());
+
+			HttpResponse<byte[]> cbor = get(url, "application/cbor", null);
+			assertEquals("application/cbor", cbor.headers().firstValue("Content-Type").orElseThrow());
+			assertEquals(expected, new CBORMapper().readTree(cbor.body()));
+
+			HttpResponse<byte[]> smile = get(url, "application/x-jackson-smile", null);
+			assertEquals("application/x-jackson-smile", smile.headers().firstValue("Content-Type").orElseThrow());
+			assertEquals(expected, new SmileMapper().readTree(smile.body()));
+
+			assertTrue(cbor.body().length < reference.body().length && smile.body().length < reference.body().length);
+		}
+	}
+
+	@Test
+	void eachFormatHasItsOwnEtagAndResponsesVaryOnAccept() throws Exception {
+		String url = "http://localhost:" + port + "/departements/" + departementId + "/villes";
+		HttpResponse<byte[]> json = get("/departements/" + departementId + "/villes", "application/json", null);
+		HttpResponse<byte[]> cbor = get("/departements/" + departementId + "/villes", "application/cbor", null);
+		String jsonEtag = json.headers().firstValue("ETag").orElseThrow();
+		assertEquals("\"0-json\"", jsonEtag);
+		assertEquals("\"0-cbor\"", cbor.headers().firstValue("ETag").orElseThrow());
+		assertTrue(json.headers().allValues("Vary").contains("Accept"));
+		assertTrue(cbor.headers().allValues("Vary").contains("Accept"));
+
+		// L'ETag du JSON ne valide pas la représentation CBOR
+		HttpResponse<byte[]> conditional = client.send(HttpRequest.newBuilder(URI.create(url))
+				.header("Accept", "application/cbor").header("If-None-Match", jsonEtag).build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(200, conditional.statusCode());
+		assertEquals("application/cbor", conditional.headers().firstValue("Content-Type").orElseThrow());
+
+		HttpResponse<byte[]> notModified = client.send(HttpRequest.newBuilder(URI.create(url))
+				.header("Accept", "application/json").header("If-None-Match", jsonEtag).build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(304, notModified.statusCode());
+		assertTrue(notModified.headers().allValues("Vary").contains("Accept"));
+	}
+
+	@Test
+	void jsonStaysTheDefault() throws Exception {
+		HttpResponse<byte[]> response = get("/villes", "*/*", null);
+		assertEquals("application/json", response.headers().firstValue("Content-Type").orElseThrow());
+	}
+
+	@Test
+	void largeTextResponsesAreCompressed() throws Exception {
+		HttpResponse<byte[]> response = get("/villes?limit=1000", "application/json", "gzip");
+		assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+
+		HttpResponse<byte[]> cbor = get("/villes?limit=1000", "application/cbor", "gzip");
+		assertFalse(cbor.headers().firstValue("Content-Encoding").isPresent());
+	}
+
+	private HttpResponse<byte[]> get(String url, String accept, String acceptEncoding) throws Exception {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + url)).header("Accept", accept);
+		if (acceptEncoding != null) {
+			request.header("Accept-Encoding", acceptEncoding);
+		}
+		HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+		assertEquals(200, response.statusCode());
+		return response;
+	}
+}
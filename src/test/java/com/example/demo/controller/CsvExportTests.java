@@ -0,0 +1,77 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exports CSV en flux : toutes les lignes, dans l'ordre des ids, sur plusieurs lots,
+ * avec les noms qui contiennent une virgule ou un guillemet mis entre guillemets (RFC 4180)
+ */
+@SpringBootTest(properties = "app.export.batch-size=2")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CsvExportTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	private Departement reunion;
+
+	private Departement loire;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+		reunion = new Departement("La Réunion, île", "974");
+		reunion.addVille(new Ville("Saint-Denis, La Réunion", 153000));
+		reunion.addVille(new Ville("Le \"Port\"", 32000));
+		reunion.addVille(new Ville("Saint-Pierre", 84000));
+		reunion = departementRepository.save(reunion);
+		loire = departementRepository.save(new Departement("Loire", "042"));
+	}
+
+	@Test
+	void villesExportQuotesNamesAcrossBatches() throws Exception {
+		List<Ville> villes = reunion.getVilles();
+		assertEquals("id,nom,nbHabitants\n"
+				+ villes.get(0).getId() + ",\"Saint-Denis, La Réunion\",153000\n"
+				+ villes.get(1).getId() + ",\"Le \"\"Port\"\"\",32000\n"
+				+ villes.get(2).getId() + ",Saint-Pierre,84000\n", export("/villes/export"));
+	}
+
+	@Test
+	void departementsExportQuotesNames() throws Exception {
+		assertEquals("id,nom\n"
+				+ reunion.getId() + ",\"La Réunion, île\"\n"
+				+ loire.getId() + ",Loire\n", export("/departements/export"));
+	}
+
+	private String export(String url) throws Exception {
+		MvcResult result = mockMvc.perform(get(url)).andReturn();
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("text/csv"));
+		return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+}
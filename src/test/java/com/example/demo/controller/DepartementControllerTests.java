@@ -0,0 +1,222 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.DepartementService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class DepartementControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+	}
+
+	@Test
+	void getDepartementsIssuesConstantNumberOfStatements() throws Exception {
+		seed(3, 2);
+		long few = countStatements("/departements");
+
+		seed(30, 10);
+		long many = countStatements("/departements");
+
+		assertEquals(2, few);
+		assertEquals(few, many);
+	}
+
+	@Test
+	void getDepartementsWithoutVillesIssuesSingleStatement() throws Exception {
+		seed(10, 5);
+		assertEquals(1, countStatements("/departements?villes=AUCUNE"));
+	}
+
+	@Test
+	void getDepartementsRendersVillesWithoutOpenSession() throws Exception {
+		seed(1, 3);
+		mockMvc.perform(get("/departements"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[0].villes.length()").value(3));
+	}
+
+	@Test
+	void conditionalGetAnswersNotModifiedFromVersionQuery() throws Exception {
+		seed(1, 3);
+		String url = "/departements/" + departementRepository.findAll().get(0).getId();
+		String etag = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, etag));
+		assertEquals(1, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void villeWriteChangesListEtagAndStaleIfMatchIsRejected() throws Exception {
+		seed(1, 1);
+		Departement departement = departementRepository.findWithVillesById(departementRepository.findAll().get(0).getId()).orElseThrow();
+		String villes = "/departements/" + departement.getId() + "/villes";
+		String ville = villes + "/" + departement.getVilles().get(0).getId();
+		String listEtag = mockMvc.perform(get(villes)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(put(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Ville modifiée\",\"nbHabitants\":5}")
+						.header(HttpHeaders.IF_MATCH, "\"0-json\""))
+				.andExpect(status().isOk());
+		mockMvc.perform(put(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Ville perdue\",\"nbHabitants\":5}")
+						.header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(put(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Ville perdue\",\"nbHabitants\":5}")
+						.header(HttpHeaders.IF_MATCH, "W/\"1-json\""))
+				.andExpect(status().isPreconditionFailed());
+
+		mockMvc.perform(get(villes).header(HttpHeaders.IF_NONE_MATCH, listEtag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].nom").value("Ville modifiée"));
+		assertNotEquals(listEtag, mockMvc.perform(get(villes)).andReturn().getResponse().getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	void patchVilleUpdatesOneFieldWithoutLoadingEntities() throws Exception {
+		seed(1, 1);
+		Departement departement = departementRepository.findWithVillesById(departementRepository.findAll().get(0).getId()).orElseThrow();
+		String ville = "/villes/" + departement.getVilles().get(0).getId();
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		mockMvc.perform(patch(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\":4321}")
+						.header(HttpHeaders.IF_MATCH, "\"0\""))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.nom").value("Ville 0-0"))
+				.andExpect(jsonPath("$.nbHabitants").value(4321));
+		assertEquals(0, statistics.getEntityLoadCount());
+		// Lecture verrouillée de la ville, UPDATE de la ville, version du département, statistiques (différence de population)
+		assertEquals(4, statistics.getPrepareStatementCount());
+
+		statistics.clear();
+		mockMvc.perform(patch(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Ville renommée\"}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.nbHabitants").value(4321));
+		// La population ne change pas : pas de mise à jour des statistiques
+		assertEquals(3, statistics.getPrepareStatementCount());
+
+		mockMvc.perform(patch(ville).contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\":-1}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(patch("/villes/0").contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\":10}"))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/departements/" + departement.getId() + "/stats"))
+				.andExpect(jsonPath("$.population").value(4321));
+	}
+
+	@Test
+	void departementPutSurvivesConcurrentVilleWrites() throws Exception {
+		seed(1, 1);
+		Departement departement = departementRepository.findWithVillesById(departementRepository.findAll().get(0).getId()).orElseThrow();
+		String url = "/villes/" + departement.getVilles().get(0).getId();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// Chaque écriture sur la ville incrémente la version du département pendant que ses PUT sans If-Match s'exécutent
+			Future<?> villes = executor.submit(() -> {
+				for (int i = 0; i < 100; i++) {
+					mockMvc.perform(patch(url).contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\":" + (1000 + i) + "}"))
+							.andExpect(status().isOk());
+				}
+				return null;
+			});
+			for (int i = 0; i < 100; i++) {
+				mockMvc.perform(put("/departements").contentType(MediaType.APPLICATION_JSON)
+								.content("{\"id\":" + departement.getId() + ",\"nom\":\"Département " + i + "\",\"code\":\"042\"}"))
+						.andExpect(status().isOk());
+			}
+			villes.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		mockMvc.perform(put("/departements").contentType(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_MATCH, "\"0\"")
+						.content("{\"id\":" + departement.getId() + ",\"nom\":\"Loire\",\"code\":\"042\"}"))
+				.andExpect(status().isPreconditionFailed());
+		mockMvc.perform(put("/departements").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"id\":" + departement.getId() + ",\"nom\":\"L\",\"code\":\"042\"}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(put("/departements").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"id\":999999,\"nom\":\"Loire\",\"code\":\"042\"}"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void villeIsLookedUpWithinItsDepartement() throws Exception {
+		seed(2, 1);
+		List<Departement> departements = departementRepository.findAll();
+		long premier = departements.get(0).getId();
+		long second = departements.get(1).getId();
+		long ville = departementRepository.findWithVillesById(premier).orElseThrow().getVilles().get(0).getId();
+
+		mockMvc.perform(get("/departements/" + premier + "/villes/" + ville))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(ville))
+				.andExpect(jsonPath("$.nom").value("Ville 0-0"));
+		mockMvc.perform(get("/departements/" + second + "/villes/" + ville))
+				.andExpect(status().isNotFound());
+		mockMvc.perform(get("/departements/" + premier + "/villes/999999"))
+				.andExpect(status().isNotFound());
+	}
+
+	private long countStatements(String url) throws Exception {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		mockMvc.perform(get(url)).andExpect(status().isOk());
+		return statistics.getPrepareStatementCount();
+	}
+
+	private void seed(int departements, int villesParDepartement) throws Exception {
+		for (int i = 0; i < departements; i++) {
+			Departement departement = new Departement("Département " + i, String.format("%03d", i));
+			for (int j = 0; j < villesParDepartement; j++) {
+				departement.addVille(new Ville("Ville " + i + "-" + j, 1000 + j));
+			}
+			departementService.addDepartement(departement);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.DepartementService;
+import com.example.demo.service.VilleService;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Les exports JSON en flux produisent exactement le JSON de la sérialisation par introspection des listes complètes
+ * Les lots sont petits pour que l'export en enchaîne plusieurs.
+ */
+@SpringBootTest(properties = "app.export.batch-size=3")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class JsonExportTests {
+
+	/**
+	 * Désactive les sérialiseurs écrits à la main : Jackson revient à l'introspection des getters
+	 */
+	@JsonSerialize(using = JsonSerializer.None.class)
+	private abstract static class Reflective {
+	}
+
+	private final ObjectMapper reflective = JsonMapper.builder()
+			.addMixIn(VilleDto.class, Reflective.class)
+			.addMixIn(DepartementDto.class, Reflective.class)
+			.build();
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+		for (int i = 0; i < 4; i++) {
+			Departement departement = new Departement("Département " + i, String.format("%03d", i));
+			for (int j = 0; j < 2 * i; j++) {
+				departement.addVille(new Ville("Ville \"" + i + "\"-" + j + " é", 1000 + j));
+			}
+			departementRepository.save(departement);
+		}
+	}
+
+	@Test
+	void villesExportMatchesReflectiveSerialization() throws Exception {
+		assertEquals(reflective.writeValueAsString(villeService.getVilles()), export("/villes/export"));
+	}
+
+	@Test
+	void departementsExportMatchesReflectiveSerialization() throws Exception {
+		assertEquals(reflective.writeValueAsString(departementService.getDepartements()), export("/departements/export"));
+	}
+
+	@Test
+	void exportsHoldNoTransactionWhileWriting() throws Exception {
+		OutputStream client = new OutputStream() {
+			@Override
+			public void write(int b) {
+				assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+			}
+		};
+		villeService.exportVillesToJson(client);
+		departementService.exportDepartementsToJson(client);
+	}
+
+	@Test
+	void exportStaysCsvByDefault() throws Exception {
+		MvcResult result = mockMvc.perform(get("/villes/export")).andReturn();
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("text/csv"));
+		assertTrue(result.getResponse().getContentAsString(StandardCharsets.UTF_8).startsWith("id,nom,nbHabitants\n"));
+	}
+
+	private String export(String url) throws Exception {
+		MvcResult result = mockMvc.perform(get(url).accept(MediaType.APPLICATION_JSON)).andReturn();
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON));
+		return result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Métriques publiées au format Prometheus, lues sur le port de management et non sur celui de l'API
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricsTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@LocalManagementPort
+	private int managementPort;
+
+	@Test
+	void prometheusScrapeExposesEndpointServiceRepositoryAndPoolMetrics() throws Exception {
+		Departement departement = new Departement("Loire", "042");
+		departement.addVille(new Ville("Saint-Étienne", 172000));
+		departement = departementRepository.save(departement);
+		long villeId = departement.getVilles().get(0).getId();
+
+		mockMvc.perform(get("/villes")).andExpect(status().isOk());
+		mockMvc.perform(get("/villes/search").param("prefix", "saint")).andExpect(status().isOk());
+		mockMvc.perform(get("/departements/" + departement.getId())).andExpect(status().isOk());
+		mockMvc.perform(patch("/villes/" + villeId).header(HttpHeaders.IF_MATCH, "\"99\"")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\": 1}"))
+				.andExpect(status().isPreconditionFailed());
+
+		// Actuator n'est pas servi sur le port de l'API
+		mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isNotFound());
+
+		HttpResponse<String> scrape = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+				URI.create("http://localhost:" + managementPort + "/actuator/prometheus")).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, scrape.statusCode());
+		for (String metric : new String[]{
+				"http_server_requests_seconds_bucket{application=\"demo\"",
+				"uri=\"/departements/{id}\"",
+				"recensement_service_seconds_bucket{",
+				"method=\"getDepartementById\"",
+				"spring_data_repository_invocations_seconds_bucket{",
+				"recensement_api_exceptions_total{",
+				"exception=\"VersionConflictException\"",
+				"recensement_villes_index_reads_total{",
+				"index=\"autocomplete\"",
+				"recensement_villes_index_size{",
+				"hikaricp_connections_active{",
+				"hibernate_query_executions_total{",
+				"hibernate_entities_loads_total{",
+				"hibernate_collections_fetches_total{"}) {
+			assertTrue(scrape.body().contains(metric), metric);
+		}
+	}
+}
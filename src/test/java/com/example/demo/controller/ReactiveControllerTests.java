@@ -0,0 +1,124 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.DepartementService;
+import com.example.demo.service.ReactiveReadService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReactiveControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private ReactiveReadService reactiveReadService;
+
+	private Departement departement;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		departement = new Departement("Loire", "042");
+		departement.addVille(new Ville("Saint-Étienne", 172000));
+		departement.addVille(new Ville("Roanne", 34000));
+		departement.addVille(new Ville("Montbrison", 16000));
+		departement = departementService.addDepartement(departement);
+	}
+
+	@Test
+	void villesArePagedByCursorFromR2dbc() throws Exception {
+		long first = departement.getVilles().get(0).getId();
+		perform(get("/reactive/villes").param("after", String.valueOf(first)).param("limit", "1").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(jsonPath("$[0].nom").value("Roanne"));
+	}
+
+	@Test
+	void villesStreamAsNdjson() throws Exception {
+		String body = mockMvc.perform(get("/departements/" + departement.getId() + "/villes").accept(MediaType.APPLICATION_JSON))
+				.andReturn().getResponse().getContentAsString();
+		String stream = perform(get("/reactive/departements/" + departement.getId() + "/villes").accept(MediaType.APPLICATION_NDJSON))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertEquals(3, stream.lines().count());
+		assertEquals(body.replace("[", "").replace("]", "").replace("},{", "}\n{"), stream.strip());
+	}
+
+	@Test
+	void missingResourcesAnswerNotFound() throws Exception {
+		perform(get("/reactive/villes/0")).andExpect(status().isNotFound());
+		perform(get("/reactive/departements/0")).andExpect(status().isNotFound());
+		perform(get("/reactive/departements/0/villes").accept(MediaType.APPLICATION_JSON)).andExpect(status().isNotFound());
+		perform(get("/reactive/departements/" + departement.getId()))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.code").value("042"));
+	}
+
+	@Test
+	void searchAndRangeReadTheInMemoryIndexes() throws Exception {
+		perform(get("/reactive/villes/search").param("prefix", "saint eti").accept(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$[0].nom").value("Saint-Étienne"));
+		perform(get("/reactive/villes/between").param("min", "10000").param("max", "50000").accept(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].nom").value("Montbrison"));
+	}
+
+	@Test
+	void indexReadsLeaveTheCallerThread() {
+		// Un index à recharger lit la base en JDBC : la lecture ne doit pas bloquer le thread qui s'abonne
+		assertTrue(reactiveReadService.searchVilles("saint", 10).then(Mono.fromCallable(() -> Thread.currentThread().getName()))
+				.block().startsWith("boundedElastic"));
+		assertTrue(reactiveReadService.getVillesBetween(0, 1000000, 0, 10).then(Mono.fromCallable(() -> Thread.currentThread().getName()))
+				.block().startsWith("boundedElastic"));
+	}
+
+	@Test
+	void unknownCursorAnswersBadRequest() throws Exception {
+		perform(get("/reactive/villes/between").param("min", "0").param("max", "50000").param("after", "999999").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Lancer une requête asynchrone et attendre sa réponse
+	 * Un Mono<ResponseEntity<Flux>> demande deux traitements asynchrones : le Mono, puis l'écriture du Flux
+	 */
+	private ResultActions perform(RequestBuilder request) throws Exception {
+		MvcResult result = mockMvc.perform(request).andExpect(request().asyncStarted()).andReturn();
+		ResultActions actions = mockMvc.perform(asyncDispatch(result));
+		while (actions.andReturn().getRequest().isAsyncStarted()) {
+			actions = mockMvc.perform(asyncDispatch(actions.andReturn()));
+		}
+		return actions;
+	}
+}
@@ -0,0 +1,119 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.ReadYourWritesFilter;
+import com.example.demo.config.ReplicaRoutingDataSource;
+import com.example.demo.dto.DepartementDto;
+import com.example.demo.entity.Departement;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.DepartementService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Deux bases H2 en mémoire jouent la base principale et le réplica
+ * La réplication est simulée par une copie (SCRIPT) de la base principale vers le réplica.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=" + ReplicaRoutingTests.PRIMARY,
+		"app.datasource.replicas[0].url=" + ReplicaRoutingTests.REPLICA + ";IFEXISTS=TRUE",
+		"app.datasource.read-your-writes=1m",
+		"app.datasource.health-check-interval=1h"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReplicaRoutingTests {
+
+	static final String PRIMARY = "jdbc:h2:mem:primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	static final String REPLICA = "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		departementRepository.save(new Departement("Loire", "042"));
+		replicate();
+		dataSource.unwrap(ReplicaRoutingDataSource.class).checkReplicas();
+	}
+
+	@Test
+	void readOnlyTransactionsReadTheReplica() throws Exception {
+		departementRepository.save(new Departement("Rhône", "069"));
+
+		List<DepartementDto> departements = departementService.getDepartements();
+		assertEquals(List.of("Loire"), departements.stream().map(DepartementDto::getNom).toList());
+		assertEquals(2, jdbcTemplate.queryForObject("select count(*) from departement", Integer.class));
+	}
+
+	@Test
+	void clientReadsItsOwnWritesFromThePrimary() throws Exception {
+		MvcResult created = mockMvc.perform(post("/departements").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"nom\": \"Rhône\", \"code\": \"069\"}"))
+				.andExpect(status().isCreated())
+				.andReturn();
+		String location = created.getResponse().getHeader("Location");
+		Cookie cookie = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+		assertNotNull(cookie);
+
+		mockMvc.perform(get(location).cookie(cookie)).andExpect(status().isOk());
+		mockMvc.perform(get(location)).andExpect(status().isNotFound());
+	}
+
+	@Test
+	void readsFallBackToThePrimaryWhenTheReplicaIsDown() throws Exception {
+		departementRepository.save(new Departement("Rhône", "069"));
+		try (Connection replica = DriverManager.getConnection(REPLICA, "sa", ""); Statement statement = replica.createStatement()) {
+			statement.execute("SHUTDOWN");
+		}
+		dataSource.unwrap(ReplicaRoutingDataSource.class).checkReplicas();
+
+		assertEquals(2, departementService.getDepartements().size());
+	}
+
+	/**
+	 * Copier le schéma et les données de la base principale dans le réplica (recréé s'il a été arrêté)
+	 */
+	private void replicate() throws SQLException {
+		List<String> script = jdbcTemplate.queryForList("SCRIPT DROP", String.class);
+		try (Connection replica = DriverManager.getConnection(REPLICA, "sa", ""); Statement statement = replica.createStatement()) {
+			for (String sql : script) {
+				statement.execute(sql);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.SqlMonitor;
+import com.example.demo.config.SqlStats;
+import com.example.demo.config.SqlStatsFilter;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {"app.sql.slow-query-threshold=0ms", "app.sql.n-plus-one-threshold=3",
+		"management.endpoints.web.exposure.include=slowqueries"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlMonitoringTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private SqlMonitor sqlMonitor;
+
+	@LocalManagementPort
+	private int managementPort;
+
+	private Departement departement;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+		departement = new Departement("Loire", "042");
+		departement.addVille(new Ville("Saint-Étienne", 172000));
+		departement.addVille(new Ville("Roanne", 34000));
+		departement = departementRepository.save(departement);
+		sqlMonitor.clearSlowQueries();
+	}
+
+	@Test
+	void responseAnnouncesStatementCountAndDatabaseTime() throws Exception {
+		mockMvc.perform(get("/departements?villes=AUCUNE"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(SqlStatsFilter.STATEMENTS_HEADER, "1"))
+				.andExpect(header().string("Server-Timing", startsWith("db;dur=")));
+		mockMvc.perform(get("/departements/" + departement.getId() + "/villes/0"))
+				.andExpect(header().string(SqlStatsFilter.STATEMENTS_HEADER, "1"));
+	}
+
+	@Test
+	void repeatedStatementsAreReportedAsNPlusOne() {
+		SqlStats stats = SqlStats.begin("test");
+		try {
+			for (int i = 0; i < 3; i++) {
+				departementRepository.findById(departement.getId());
+			}
+		} finally {
+			SqlStats.end();
+		}
+		assertEquals(3, stats.statements());
+		Map<String, Integer> repeated = stats.repeated(3);
+		assertEquals(1, repeated.size());
+		assertEquals(3, repeated.values().iterator().next());
+	}
+
+	@Test
+	void slowStatementsAreKeptWithTheirPlan() throws Exception {
+		mockMvc.perform(get("/departements/" + departement.getId() + "/villes/desc")).andExpect(status().isOk());
+
+		List<SqlMonitor.SlowQuery> slowQueries = List.of();
+		for (int i = 0; i < 50 && slowQueries.stream().noneMatch(query -> !query.plan().isEmpty()); i++) {
+			Thread.sleep(100);
+			slowQueries = sqlMonitor.slowQueries();
+		}
+		SqlMonitor.SlowQuery slowQuery = slowQueries.stream().filter(query -> !query.plan().isEmpty()).findFirst().orElseThrow();
+		assertTrue(slowQuery.request().startsWith("GET /departements/"));
+		assertFalse(slowQuery.plan().get(0).startsWith("EXPLAIN impossible"), slowQuery.plan().get(0));
+
+		HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+				URI.create("http://localhost:" + managementPort + "/actuator/slowqueries")).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("\"plan\":["), response.body());
+	}
+}
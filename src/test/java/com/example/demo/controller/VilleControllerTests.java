@@ -0,0 +1,209 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.CursorPage;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.service.DepartementService;
+import com.example.demo.repository.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pagination de /villes par curseur, et réponses des écritures sur les villes selon l'en-tête Prefer :
+ * jamais de collection relue, seulement la ville concernée, sans corps avec return=minimal
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class VilleControllerTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	private long departementId;
+
+	private long lyon;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		Departement rhone = new Departement("Rhône", "069");
+		rhone.addVille(new Ville("Lyon", 520000));
+		rhone.addVille(new Ville("Villeurbanne", 150000));
+		rhone = departementService.addDepartement(rhone);
+		departementId = rhone.getId();
+		lyon = rhone.getVilles().get(0).getId();
+	}
+
+	@Test
+	void getVillesWalksPagesWithTheAfterCursor() throws Exception {
+		Departement loire = new Departement("Loire", "042");
+		for (int i = 0; i < 3; i++) {
+			loire.addVille(new Ville("Ville " + i, 1000 + i));
+		}
+		departementService.addDepartement(loire);
+		List<Long> ids = villeRepository.findAll().stream().map(Ville::getId).sorted().toList();
+
+		mockMvc.perform(get("/villes?limit=2"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content.length()").value(2))
+				.andExpect(jsonPath("$.content[0].id").value(ids.get(0)))
+				.andExpect(jsonPath("$.next").value(ids.get(1)));
+
+		mockMvc.perform(get("/villes?limit=2&after=" + ids.get(1)))
+				.andExpect(jsonPath("$.content.length()").value(2))
+				.andExpect(jsonPath("$.content[0].id").value(ids.get(2)))
+				.andExpect(jsonPath("$.next").value(ids.get(3)));
+
+		mockMvc.perform(get("/villes?limit=2&after=" + ids.get(3)))
+				.andExpect(jsonPath("$.content.length()").value(1))
+				.andExpect(jsonPath("$.content[0].id").value(ids.get(4)))
+				.andExpect(jsonPath("$.next").value(nullValue()));
+
+		// Une dernière page pleine n'annonce pas de page suivante vide
+		mockMvc.perform(get("/villes?limit=5"))
+				.andExpect(jsonPath("$.content.length()").value(5))
+				.andExpect(jsonPath("$.next").value(nullValue()));
+		mockMvc.perform(get("/villes?after=" + ids.get(4)))
+				.andExpect(jsonPath("$.content.length()").value(0))
+				.andExpect(jsonPath("$.next").value(nullValue()));
+	}
+
+	@Test
+	void getVillesBoundsThePageSize() throws Exception {
+		mockMvc.perform(get("/villes?limit=0"))
+				.andExpect(jsonPath("$.content.length()").value(1));
+		mockMvc.perform(get("/villes?limit=" + (CursorPage.MAX_LIMIT + 1)))
+				.andExpect(jsonPath("$.content.length()").value(2));
+		mockMvc.perform(get("/villes?page=0&size=1"))
+				.andExpect(jsonPath("$.content.length()").value(1))
+				.andExpect(jsonPath("$.page.totalElements").value(2))
+				.andExpect(jsonPath("$.page.totalPages").value(2));
+	}
+
+	@Test
+	void unknownCursorAnswersBadRequest() throws Exception {
+		mockMvc.perform(get("/villes/between?min=0&max=1000000&after=999999"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/villes/min?min=0&after=999999"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/departements/" + departementId + "/villes/desc?after=999999"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/departements/" + departementId + "/villes/between?min=0&max=1000000&after=999999"))
+				.andExpect(status().isBadRequest());
+
+		mockMvc.perform(get("/villes/between?min=0&max=1000000&after=" + lyon))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content.length()").value(0));
+		mockMvc.perform(get("/departements/" + departementId + "/villes/desc?after=" + lyon))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[0].nom").value("Villeurbanne"));
+	}
+
+	@Test
+	void postAnswersCreatedWithLocation() throws Exception {
+		String location = mockMvc.perform(post("/departements/" + departementId + "/villes")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Vénissieux\",\"nbHabitants\":67000}"))
+				.andExpect(status().isCreated())
+				.andExpect(jsonPath("$.nom").value("Vénissieux"))
+				.andExpect(header().doesNotExist(Prefer.APPLIED))
+				.andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+		long id = villeRepository.findAll().stream().filter(v -> v.getNom().equals("Vénissieux")).findFirst().orElseThrow().getId();
+		assertEquals("http://localhost/departements/" + departementId + "/villes/" + id, location);
+		mockMvc.perform(get(location)).andExpect(status().isOk()).andExpect(jsonPath("$.id").value(id));
+
+		mockMvc.perform(post("/departements/" + departementId + "/villes").header("Prefer", "return=minimal")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Bron\",\"nbHabitants\":42000}"))
+				.andExpect(status().isCreated())
+				.andExpect(header().exists(HttpHeaders.LOCATION))
+				.andExpect(header().string(Prefer.APPLIED, "return=minimal"))
+				.andExpect(content().string(""));
+	}
+
+	@Test
+	void putAndPatchReturnOnlyTheUpdatedVille() throws Exception {
+		mockMvc.perform(put("/villes/" + lyon).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Lyon\",\"nbHabitants\":521000}"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.id").value(lyon))
+				.andExpect(jsonPath("$.nbHabitants").value(521000));
+
+		mockMvc.perform(patch("/villes/" + lyon).header("Prefer", "return=representation")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"nbHabitants\":522000}"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(Prefer.APPLIED, "return=representation"))
+				.andExpect(jsonPath("$.id").value(lyon))
+				.andExpect(jsonPath("$.nbHabitants").value(522000));
+
+		mockMvc.perform(put("/villes/" + lyon).header("Prefer", "return=minimal")
+						.contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Lyon\",\"nbHabitants\":523000}"))
+				.andExpect(status().isNoContent())
+				.andExpect(header().string(Prefer.APPLIED, "return=minimal"));
+
+		mockMvc.perform(put("/villes/999999").contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Nulle part\",\"nbHabitants\":1}"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void invalidPutAnswersBadRequest() throws Exception {
+		for (String url : new String[]{"/villes/" + lyon, "/departements/" + departementId + "/villes/" + lyon}) {
+			mockMvc.perform(put(url).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"ab\",\"nbHabitants\":5}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(content().string("Le nom de la ville doit contenir entre 3 et 50 caractères"));
+			mockMvc.perform(put(url).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Lyon\"}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(content().string("Le nombre d'habitants de la ville ne peut pas être nul"));
+			mockMvc.perform(put(url).contentType(MediaType.APPLICATION_JSON).content("{\"nom\":\"Lyon\",\"nbHabitants\":-1}"))
+					.andExpect(status().isBadRequest());
+		}
+		mockMvc.perform(get("/villes/" + lyon))
+				.andExpect(jsonPath("$.nbHabitants").value(520000));
+	}
+
+	@Test
+	void deleteAnswersNoContentOrTheDeletedVille() throws Exception {
+		long villeurbanne = villeRepository.findAll().stream().filter(v -> v.getId() != lyon).findFirst().orElseThrow().getId();
+
+		mockMvc.perform(delete("/villes/" + lyon))
+				.andExpect(status().isNoContent())
+				.andExpect(header().doesNotExist(Prefer.APPLIED));
+		mockMvc.perform(delete("/villes/" + lyon)).andExpect(status().isNotFound());
+
+		mockMvc.perform(delete("/departements/" + departementId + "/villes/" + villeurbanne).header("Prefer", "return=representation"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(Prefer.APPLIED, "return=representation"))
+				.andExpect(jsonPath("$.id").value(villeurbanne))
+				.andExpect(jsonPath("$.nom").value("Villeurbanne"));
+		assertEquals(0, villeRepository.count());
+	}
+}
@@ -0,0 +1,150 @@
+package com.example.demo.controller;
+
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.repository.VilleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Import en masse des villes : les lignes valides sont insérées, les autres sont comptées et expliquées,
+ * un fichier CSV sans en-tête utilisable est refusé en entier
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class VilleImportTests {
+
+	private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	private long departementId;
+
+	/**
+	 * Écouteur qui échoue à la demande, comme un recalcul des statistiques qui lèverait une exception
+	 */
+	static class FailingListener {
+
+		static final AtomicBoolean FAIL = new AtomicBoolean();
+
+		@EventListener
+		public void onVilleChanged(VilleChangedEvent event) {
+			if (FAIL.get()) {
+				throw new IllegalStateException("écouteur en échec");
+			}
+		}
+	}
+
+	@TestConfiguration
+	static class FailingListenerConfig {
+
+		@Bean
+		FailingListener failingListener() {
+			return new FailingListener();
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		FailingListener.FAIL.set(false);
+		departementRepository.deleteAll();
+		departementId = departementRepository.save(new Departement("Loire", "042")).getId();
+	}
+
+	@Test
+	void csvImportsValidRowsAndRejectsTheOthers() throws Exception {
+		String csv = "nom,nbHabitants,departementId\n"
+				+ "Saint-Étienne,172000," + departementId + "\n"
+				+ "\"Saint-Denis, La Réunion\",153000," + departementId + "\r\n"
+				+ "\"Le \"\"Port\"\"\",32000," + departementId + "\n"
+				+ "\"Ville\nsur deux lignes\",5000," + departementId + "\n"
+				+ "ab,100," + departementId + "\n"
+				+ "\n"
+				+ "Roanne,-5," + departementId + "\n"
+				+ "Firminy,16000,999999\n"
+				+ "Montbrison,abc," + departementId + "\n"
+				+ "Feurs,8000\n";
+		mockMvc.perform(post("/villes/import").contentType(CSV).content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accepted").value(4))
+				.andExpect(jsonPath("$.rejected").value(5))
+				.andExpect(jsonPath("$.errors[0]").value("ligne 7 : Le nom de la ville doit contenir entre 3 et 50 caractères"))
+				.andExpect(jsonPath("$.errors[1]").value("ligne 9 : Le nombre d'habitants de la ville doit être supérieur à 0"))
+				.andExpect(jsonPath("$.errors[2]").value("ligne 10 : Le département 999999 n'existe pas"))
+				.andExpect(jsonPath("$.errors[3]").value("ligne 11 : Nombre invalide : abc"))
+				.andExpect(jsonPath("$.errors[4]").value("ligne 12 : 3 colonnes attendues, 2 trouvées"));
+		assertEquals(List.of("Le \"Port\"", "Saint-Denis, La Réunion", "Saint-Étienne", "Ville\nsur deux lignes"),
+				villeRepository.findAll().stream().map(Ville::getNom).sorted().toList());
+	}
+
+	@Test
+	void ndjsonImportsValidRowsAndRejectsTheOthers() throws Exception {
+		String ndjson = "{\"nom\":\"Saint-Étienne\",\"nbHabitants\":172000}\n"
+				+ "{\"nom\":\"ab\",\"nbHabitants\":100}\n"
+				+ "{\"nom\":\"Roanne\"}\n"
+				+ "{\"nom\":\"Firminy\",\n"
+				+ "{\"nom\":\"Montbrison\",\"nbHabitants\":16000,\"pays\":\"France\"}\n";
+		mockMvc.perform(post("/departements/" + departementId + "/villes/import").contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accepted").value(2))
+				.andExpect(jsonPath("$.rejected").value(3))
+				.andExpect(jsonPath("$.errors[0]").value("ligne 2 : Le nom de la ville doit contenir entre 3 et 50 caractères"))
+				.andExpect(jsonPath("$.errors[1]").value("ligne 3 : Le nombre d'habitants de la ville ne peut pas être nul"))
+				.andExpect(jsonPath("$.errors[2]").value("ligne 4 : JSON invalide"));
+		assertEquals(2, villeRepository.count());
+	}
+
+	@Test
+	void csvWithoutUsableHeaderAnswersBadRequest() throws Exception {
+		mockMvc.perform(post("/villes/import").contentType(CSV).content(""))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/villes/import").contentType(CSV).content("name,population\nLyon,520000\n"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/villes/import").contentType(CSV).content("nom,nbHabitants\nLyon,520000\n"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/villes/import").contentType(CSV).content("\"nom,nbHabitants,departementId\n"))
+				.andExpect(status().isBadRequest());
+		assertEquals(0, villeRepository.count());
+
+		mockMvc.perform(post("/departements/" + departementId + "/villes/import").contentType(CSV).content("nom,nbHabitants\nLyon,520000\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accepted").value(1));
+	}
+
+	@Test
+	void committedBatchStaysAcceptedWhenAListenerFails() throws Exception {
+		FailingListener.FAIL.set(true);
+		mockMvc.perform(post("/departements/" + departementId + "/villes/import").contentType(CSV).content("nom,nbHabitants\nLyon,520000\nBron,42000\n"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accepted").value(2))
+				.andExpect(jsonPath("$.rejected").value(0));
+		assertEquals(2, villeRepository.count());
+	}
+}
@@ -0,0 +1,107 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Ville;
+import com.example.demo.service.VilleService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reprise par Flyway d'une base créée par Hibernate (ddl-auto=update) avant les migrations
+ * La base est créée avec le schéma d'origine et quelques lignes, sans historique Flyway, avant le démarrage de
+ * l'application : elle est reprise à la version 1, les migrations suivantes lui sont appliquées,
+ * puis Hibernate valide le schéma obtenu.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LegacySchemaMigrationTests {
+
+	private static final String URL = "jdbc:h2:mem:legacy;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private VilleService villeService;
+
+	@DynamicPropertySource
+	static void legacyDatabase(DynamicPropertyRegistry registry) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(URL, "sa", "");
+			 Statement statement = connection.createStatement()) {
+			// Les tables telles que Hibernate les créait à partir des entités d'origine
+			statement.execute("create table departement (code varchar(255) not null, id bigint not null auto_increment,"
+					+ " nom varchar(255) not null, primary key (id)) engine=InnoDB");
+			statement.execute("create table ville (nb_habitants integer not null, departement_id bigint not null,"
+					+ " id bigint not null auto_increment, nom varchar(50) not null, primary key (id)) engine=InnoDB");
+			statement.execute("alter table ville add constraint FKarw4d31nygufo7ww9fvos6usr foreign key (departement_id) references departement (id)");
+			statement.execute("insert into departement (id, nom, code) values (1, 'Loire', '042'), (2, 'Lozère', '048')");
+			statement.execute("insert into ville (id, nom, nb_habitants, departement_id) values (1, 'Saint-Étienne', 172000, 1), (2, 'Roanne', 34000, 1)");
+		}
+		registry.add("spring.datasource.url", () -> URL);
+		registry.add("spring.r2dbc.url", () -> "r2dbc:h2:mem:///legacy;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+	}
+
+	@Test
+	void existingDatabaseIsBaselinedThenMigrated() throws Exception {
+		assertEquals("BASELINE", jdbcTemplate.queryForObject(
+				"select type from flyway_schema_history where version = '1'", String.class));
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"select count(*) from flyway_schema_history where not success", Integer.class));
+
+		// Les lignes existantes reçoivent une version et une date de modification
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"select count(*) from ville where version <> 0 or modified_at is null", Integer.class));
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"select count(*) from departement where version <> 0 or modified_at is null", Integer.class));
+
+		// Les statistiques sont calculées pour tous les départements, même sans ville
+		Map<String, Object> loire = jdbcTemplate.queryForMap("select * from departement_stats where departement_id = 1");
+		assertEquals(2L, ((Number) loire.get("nb_villes")).longValue());
+		assertEquals(206000L, ((Number) loire.get("population")).longValue());
+		assertEquals(34000, loire.get("min_habitants"));
+		assertEquals(172000, loire.get("max_habitants"));
+		Map<String, Object> lozere = jdbcTemplate.queryForMap("select * from departement_stats where departement_id = 2");
+		assertEquals(0L, ((Number) lozere.get("nb_villes")).longValue());
+		assertNull(lozere.get("min_habitants"));
+
+		Set<String> indexes = new HashSet<>();
+		try (Connection connection = dataSource.getConnection()) {
+			for (String table : List.of("ville", "departement")) {
+				try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+					while (rs.next()) {
+						indexes.add(rs.getString("INDEX_NAME").toLowerCase());
+					}
+				}
+			}
+		}
+		assertTrue(indexes.containsAll(Set.of("idx_ville_nom", "idx_ville_nb_habitants", "idx_ville_departement_id",
+				"idx_ville_departement_nb_habitants", "idx_departement_code")), indexes.toString());
+
+		// Une ligne reprise se modifie comme une autre, avec contrôle de version
+		villeService.updateVille(2, new Ville("Roanne", 35000), 0L);
+		assertEquals(1L, jdbcTemplate.queryForObject("select version from ville where id = 2", Long.class));
+		assertEquals(207000L, jdbcTemplate.queryForObject("select population from departement_stats where departement_id = 1", Long.class));
+	}
+}
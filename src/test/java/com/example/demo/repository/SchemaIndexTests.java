@@ -0,0 +1,129 @@
+package com.example.demo.repository;
+
+import com.example.demo.config.SqlMonitor;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Les index créés par les migrations Flyway existent, et les requêtes de VilleRepository les utilisent
+ * Le SQL réellement généré par Hibernate est expliqué par SqlMonitor (toutes les requêtes sont "lentes" ici) ;
+ * H2 en mode MySQL indique dans son plan l'index parcouru, ou tableScan.
+ */
+@SpringBootTest(properties = "app.sql.slow-query-threshold=0ms")
+@ActiveProfiles("test")
+class SchemaIndexTests {
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private VilleRepository villeRepository;
+
+	@Autowired
+	private SqlMonitor sqlMonitor;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private long departementId;
+
+	private long villeId;
+
+	@BeforeEach
+	void setUp() {
+		departementRepository.deleteAll();
+		List<Departement> departements = new ArrayList<>();
+		for (int d = 0; d < 10; d++) {
+			Departement departement = new Departement("Département " + d, String.format("%03d", d));
+			for (int v = 0; v < 50; v++) {
+				departement.addVille(new Ville("Ville " + d + "-" + v, 1000 + 37 * v + d));
+			}
+			departements.add(departement);
+		}
+		Departement departement = departementRepository.saveAll(departements).get(3);
+		departementId = departement.getId();
+		villeId = departement.getVilles().get(10).getId();
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Test
+	void migrationsCreateTheSecondaryIndexes() throws Exception {
+		Set<String> indexes = new HashSet<>();
+		try (Connection connection = dataSource.getConnection()) {
+			for (String table : List.of("ville", "departement")) {
+				try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, table, false, false)) {
+					while (rs.next()) {
+						indexes.add(rs.getString("INDEX_NAME").toLowerCase());
+					}
+				}
+			}
+		}
+		assertTrue(indexes.containsAll(Set.of("idx_ville_nom", "idx_ville_nb_habitants", "idx_ville_departement_id",
+				"idx_ville_departement_nb_habitants", "idx_departement_code")), indexes.toString());
+	}
+
+	@Test
+	void villeRepositoryQueriesSeekAnIndex() throws Exception {
+		assertUses("primary_key", () -> villeRepository.findDtoById(villeId));
+		assertUses("primary_key", () -> villeRepository.findDtoByIdGreaterThan(villeId, PageRequest.of(0, 20, Sort.by("id"))));
+		assertUses("primary_key", () -> villeRepository.findByIdGreaterThanOrderByIdAsc(villeId, Limit.of(20)));
+		assertUses("primary_key", () -> villeRepository.findByDepartementIdAndId(departementId, villeId));
+		// H2 crée son propre index pour la clé étrangère departement_id et le préfère aux index composés,
+		// là où MySQL réutilise idx_ville_departement_id : on vérifie seulement la recherche par departement_id
+		assertUses("departement_id = ?", () -> villeRepository.findDtoByDepartementId(departementId));
+		assertUses("departement_id = ?", () -> villeRepository.findRefsByDepartementIdIn(List.of(departementId)));
+		assertUses("departement_id = ?", () -> villeRepository.findDtoByDepartementIdOrderByNbHabitantsDesc(
+				departementId, Integer.MAX_VALUE, Long.MAX_VALUE, PageRequest.of(0, 20)));
+		assertUses("departement_id = ?", () -> villeRepository.findDtoByDepartementIdAndNbHabitantsBetween(
+				departementId, 1000, 2000, Integer.MIN_VALUE, 0, PageRequest.of(0, 20)));
+	}
+
+	@Test
+	void nameCodeAndPopulationSearchesSeekAnIndex() throws Exception {
+		assertUses("idx_ville_departement_nb_habitants", () -> jdbcTemplate.queryForList(
+				"select id from ville where departement_id = ? and nb_habitants between ? and ?", Long.class, departementId, 1000, 1100));
+		assertUses("idx_ville_nom", () -> jdbcTemplate.queryForList("select id from ville where nom like ?", Long.class, "Ville 3-1%"));
+		assertUses("idx_ville_nb_habitants", () -> jdbcTemplate.queryForList("select id from ville where nb_habitants between ? and ?", Long.class, 1000, 1010));
+		assertUses("idx_departement_code", () -> jdbcTemplate.queryForList("select id from departement where code = ?", Long.class, "003"));
+	}
+
+	/**
+	 * Exécuter une requête et vérifier que son plan parcourt l'index attendu (son nom, ou la condition de recherche)
+	 */
+	private void assertUses(String index, Runnable query) throws InterruptedException {
+		sqlMonitor.clearSlowQueries();
+		query.run();
+		List<SqlMonitor.SlowQuery> slowQueries = List.of();
+		for (int i = 0; i < 50 && slowQueries.stream().allMatch(slowQuery -> slowQuery.plan().isEmpty()); i++) {
+			Thread.sleep(20);
+			slowQueries = sqlMonitor.slowQueries();
+		}
+		String plan = slowQueries.stream().filter(slowQuery -> slowQuery.sql().startsWith("select"))
+				.map(slowQuery -> String.join("\n", slowQuery.plan())).findFirst().orElseThrow().toLowerCase();
+		assertFalse(plan.contains("tablescan"), plan);
+		assertTrue(plan.contains(index), plan);
+	}
+}
@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.PopulationStatsDto;
+import com.example.demo.dto.VilleDto;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import com.example.demo.repository.DepartementStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.IntSummaryStatistics;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class DepartementStatsServiceTests {
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private DepartementStatsService departementStatsService;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private DepartementStatsRepository departementStatsRepository;
+
+	private Departement loire;
+
+	private Departement rhone;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		departementStatsRepository.deleteAll();
+		loire = new Departement("Loire", "042");
+		loire.addVille(new Ville("Saint-Étienne", 170000));
+		loire.addVille(new Ville("Roanne", 34000));
+		loire = departementService.addDepartement(loire);
+		rhone = departementService.addDepartement(new Departement("Rhône", "069"));
+	}
+
+	@Test
+	void statsFollowVilleWrites() throws Exception {
+		assertStats(departementStatsService.getStats(loire.getId()), 2, 204000, 34000, 170000);
+		assertStats(departementStatsService.getStats(rhone.getId()), 0, 0, null, null);
+
+		VilleDto lyon = departementService.addVille(rhone.getId(), new Ville("Lyon", 520000));
+		VilleDto villeurbanne = departementService.addVille(rhone.getId(), new Ville("Villeurbanne", 150000));
+		assertStats(departementStatsService.getStats(rhone.getId()), 2, 670000, 150000, 520000);
+
+		departementService.updateVille(rhone.getId(), villeurbanne.getId(), new Ville("Villeurbanne", 600000), null);
+		assertStats(departementStatsService.getStats(rhone.getId()), 2, 1120000, 520000, 600000);
+
+		departementService.deleteVille(rhone.getId(), lyon.getId(), null);
+		assertStats(departementStatsService.getStats(rhone.getId()), 1, 600000, 600000, 600000);
+	}
+
+	@Test
+	void populationChangesMatchARecalculation() throws Exception {
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			ids.add(departementService.addVille(rhone.getId(), new Ville("Ville " + i, 1000 * (i + 1))).getId());
+		}
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < 200; i++) {
+			// Peu de valeurs possibles : la ville qui détient le minimum ou le maximum s'en éloigne souvent
+			long id = ids.get(random.nextInt(ids.size()));
+			departementService.updateVille(rhone.getId(), id, new Ville("Ville " + id, 1000 * (1 + random.nextInt(8))), null);
+			IntSummaryStatistics expected = departementService.getVilles(rhone.getId()).stream().mapToInt(VilleDto::getNbHabitants).summaryStatistics();
+			assertStats(departementStatsService.getStats(rhone.getId()), expected.getCount(), expected.getSum(), expected.getMin(), expected.getMax());
+		}
+	}
+
+	@Test
+	void nationalStatsAddUpDepartements() throws Exception {
+		departementService.addVille(rhone.getId(), new Ville("Lyon", 520000));
+
+		PopulationStatsDto stats = departementStatsService.getStats();
+		assertStats(stats, 3, 724000, 34000, 520000);
+		assertEquals(2, stats.getDepartements().size());
+		assertEquals(724000.0 / 3, stats.getMoyenneHabitants());
+	}
+
+	@Test
+	void deletedDepartementHasNoStats() throws Exception {
+		departementService.deleteDepartement(loire.getId(), null);
+		assertNull(departementStatsService.getStats(loire.getId()));
+		assertStats(departementStatsService.getStats(), 0, 0, null, null);
+	}
+
+	@Test
+	void statsRowsAreOnlyCreatedWithTheDepartementOrAtStartup() throws Exception {
+		assertEquals(2, departementStatsRepository.count());
+
+		Departement ancien = new Departement("Ain", "001");
+		ancien.addVille(new Ville("Bourg-en-Bresse", 41000));
+		ancien = departementRepository.save(ancien);
+		departementService.addVille(ancien.getId(), new Ville("Oyonnax", 22000));
+		assertEquals(2, departementStatsRepository.count());
+
+		departementStatsService.createMissingStats();
+		assertStats(departementStatsService.getStats(ancien.getId()), 2, 63000, 22000, 41000);
+	}
+
+	private void assertStats(PopulationStatsDto stats, long nbVilles, long population, Integer min, Integer max) {
+		assertEquals(nbVilles, stats.getNbVilles());
+		assertEquals(population, stats.getPopulation());
+		assertEquals(min, stats.getMinHabitants());
+		assertEquals(max, stats.getMaxHabitants());
+	}
+}
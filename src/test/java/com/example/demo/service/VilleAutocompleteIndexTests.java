@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.VilleDto;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class VilleAutocompleteIndexTests {
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Departement departement;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		departement = new Departement("Loire", "042");
+		departement.addVille(new Ville("Saint-Étienne", 170000));
+		departement.addVille(new Ville("Saint-Chamond", 35000));
+		departement.addVille(new Ville("Roanne", 34000));
+		departement = departementService.addDepartement(departement);
+	}
+
+	@Test
+	void searchIgnoresAccentsAndCaseAndRanksByPopulation() throws Exception {
+		assertEquals(List.of("Saint-Étienne"), noms(villeService.getVillesByNameStartingWith("saint eti", 10)));
+		assertEquals(List.of("Saint-Étienne", "Saint-Chamond"), noms(villeService.getVillesByNameStartingWith("SAINT", 10)));
+		assertEquals(List.of("Saint-Étienne"), noms(villeService.getVillesByNameStartingWith("étienne", 10)));
+		assertEquals(List.of(), noms(villeService.getVillesByNameStartingWith("tienne", 10)));
+		assertEquals(List.of("Saint-Étienne"), noms(villeService.getVillesByNameStartingWith("sa", 1)));
+	}
+
+	@Test
+	void writesUpdateIndexWithoutQueries() throws Exception {
+		villeService.getVillesByNameStartingWith("saint", 10);
+		VilleDto added = departementService.addVille(departement.getId(), new Ville("Saint-Genest-Lerpt", 6000));
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		assertEquals(List.of("Saint-Étienne", "Saint-Chamond", "Saint-Genest-Lerpt"), noms(villeService.getVillesByNameStartingWith("saint", 10)));
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		departementService.updateVille(departement.getId(), added.getId(), new Ville("Saint-Genest-Malifaux", 3000), null);
+		assertEquals(List.of("Saint-Genest-Malifaux"), noms(villeService.getVillesByNameStartingWith("saint genest", 10)));
+
+		departementService.deleteVille(departement.getId(), added.getId(), null);
+		assertEquals(List.of(), noms(villeService.getVillesByNameStartingWith("genest", 10)));
+	}
+
+	private List<String> noms(List<VilleDto> villes) {
+		return villes.stream().map(VilleDto::getNom).toList();
+	}
+}
@@ -0,0 +1,155 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.VilleDto;
+import com.example.demo.event.VilleChangedEvent;
+import com.example.demo.entity.Departement;
+import com.example.demo.entity.Ville;
+import com.example.demo.repository.DepartementRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class VillePopulationIndexTests {
+
+	@Autowired
+	private VilleService villeService;
+
+	@Autowired
+	private DepartementService departementService;
+
+	@Autowired
+	private DepartementRepository departementRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private VillePopulationIndex villePopulationIndex;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private Departement departement;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		departementRepository.deleteAll();
+		departement = new Departement("Loire", "042");
+		departement.addVille(new Ville("Saint-Étienne", 170000));
+		departement.addVille(new Ville("Roanne", 34000));
+		departement.addVille(new Ville("Montbrison", 16000));
+		departement.addVille(new Ville("Firminy", 16000));
+		departement = departementService.addDepartement(departement);
+	}
+
+	@Test
+	void pagesFollowPopulationThenId() throws Exception {
+		Slice<VilleDto> first = villeService.getVillesByPopulationBetween(16000, 100000, 0, 2);
+		assertEquals(List.of("Montbrison", "Firminy"), noms(first));
+		assertTrue(first.hasNext());
+
+		Slice<VilleDto> second = villeService.getVillesByPopulationBetween(16000, 100000, first.getContent().get(1).getId(), 2);
+		assertEquals(List.of("Roanne"), noms(second));
+		assertFalse(second.hasNext());
+
+		assertEquals(List.of("Roanne", "Saint-Étienne"), noms(villeService.getVillesByPopulationGreaterThan(16000, 0, 10)));
+	}
+
+	@Test
+	void countAndSumWithoutQueries() throws Exception {
+		villeService.countVillesByPopulationBetween(0, 0);
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		assertEquals(3, villeService.countVillesByPopulationBetween(16000, 34000));
+		assertEquals(66000, villeService.sumPopulationBetween(16000, 34000));
+		assertEquals(236000, villeService.sumPopulationBetween(0, Integer.MAX_VALUE));
+		assertEquals(0, villeService.countVillesByPopulationBetween(200000, 100000));
+		assertEquals(0, statistics.getPrepareStatementCount());
+	}
+
+	@Test
+	void writesUpdateIndex() throws Exception {
+		villeService.countVillesByPopulationBetween(0, 0);
+		long roanne = departement.getVilles().get(1).getId();
+		departementService.updateVille(departement.getId(), roanne, new Ville("Roanne", 200000), null);
+		VilleDto added = departementService.addVille(departement.getId(), new Ville("Rive-de-Gier", 15000));
+
+		assertEquals(List.of("Rive-de-Gier", "Montbrison", "Firminy", "Saint-Étienne", "Roanne"), noms(villeService.getVillesByPopulationGreaterThan(0, 0, 10)));
+
+		departementService.deleteVille(departement.getId(), added.getId(), null);
+		assertEquals(4, villeService.countVillesByPopulationBetween(0, Integer.MAX_VALUE));
+		assertEquals(402000, villeService.sumPopulationBetween(0, Integer.MAX_VALUE));
+	}
+
+	@Test
+	void readsAreCountedAsHitsOrMisses() throws Exception {
+		villeService.countVillesByPopulationBetween(0, 0);
+		double hits = reads("hit");
+		double misses = reads("miss");
+		double invalidations = meterRegistry.get("recensement.villes.index.invalidations").tag("index", "population").counter().count();
+
+		villeService.countVillesByPopulationBetween(0, 0);
+		assertEquals(hits + 1, reads("hit"));
+
+		// Une écriture en masse invalide l'index : la lecture suivante le recharge
+		villePopulationIndex.onVilleChanged(VilleChangedEvent.bulk(List.of()));
+		assertEquals(invalidations + 1, meterRegistry.get("recensement.villes.index.invalidations").tag("index", "population").counter().count());
+		villeService.countVillesByPopulationBetween(0, 0);
+		assertEquals(misses + 1, reads("miss"));
+		assertEquals(hits + 1, reads("hit"));
+		assertEquals(4, meterRegistry.get("recensement.villes.index.size").tag("index", "population").gauge().value());
+	}
+
+	@Test
+	void incrementalWritesMatchAFullRebuild() {
+		SplittableRandom random = new SplittableRandom(42);
+		Map<Long, VilleDto> villes = new TreeMap<>();
+		VillePopulationIndex.Snapshot snapshot = VillePopulationIndex.Snapshot.EMPTY;
+		for (int step = 0; step < 2000; step++) {
+			long id = random.nextLong(1, 300);
+			snapshot = snapshot.without(id);
+			villes.remove(id);
+			if (random.nextInt(3) > 0) {
+				VilleDto ville = new VilleDto(id, "Ville " + id, random.nextInt(1, 50));
+				snapshot = snapshot.with(id, ville.getNom(), ville.getNbHabitants());
+				villes.put(id, ville);
+			}
+		}
+		VillePopulationIndex.Snapshot expected = VillePopulationIndex.build(new ArrayList<>(villes.values()));
+		assertArrayEquals(expected.nbHabitants, snapshot.nbHabitants);
+		assertArrayEquals(expected.ids, snapshot.ids);
+		assertArrayEquals(expected.noms, snapshot.noms);
+		assertArrayEquals(expected.cumul, snapshot.cumul);
+		assertArrayEquals(expected.idsParId, snapshot.idsParId);
+		assertArrayEquals(expected.nbHabitantsParId, snapshot.nbHabitantsParId);
+	}
+
+	private double reads(String result) {
+		return meterRegistry.get("recensement.villes.index.reads").tag("index", "population").tag("result", result).counter().count();
+	}
+
+	private List<String> noms(Slice<VilleDto> villes) {
+		return villes.getContent().stream().map(VilleDto::getNom).toList();
+	}
+}